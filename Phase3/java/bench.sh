@@ -0,0 +1,9 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+
+# Example: source ./bench.sh flightDB 5432 user
+# One benchmark, 8 threads, results appended to bench.csv:
+#   JAVA_OPTS="-Ddbproject.bench.threads=8 -Ddbproject.bench.out=bench.csv -Ddbproject.bench.label=before" source ./bench.sh flightDB 5432 user 'isFlightFull.*'
+java $JAVA_OPTS -cp lib/*:bin/ Bench $DBNAME $PORT $USER "${@:4}"
@@ -0,0 +1,9 @@
+#! /bin/bash
+SOCKET=${SOCKET:-/tmp/dbproject.sock}
+
+# Example: ./client.sh BookFlight cid=94 fnum=769 status=C
+# Sends one operation to the daemon started with: source ./run.sh flightDB 5432 user --socket /tmp/dbproject.sock
+# and prints its JSON reply; the exit status is 1 when the reply is an error. Values are URL encoded (a space as +).
+# Many operations over one connection, one reply line each:
+#   printf 'AddPilot id=7 fullname=Ann+Lee nationality=US\nFindPassengersCountWithStatus fnum=769 status=C\n' | nc -U -N $SOCKET
+echo "$*" | nc -U -N "$SOCKET" | awk '{ print } /^\{"error"/ { failed = 1 } END { exit failed }'
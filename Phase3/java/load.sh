@@ -0,0 +1,11 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+DATA=${DATA:-../data}
+
+# Example: source ./load.sh flightDB 5432 user
+# Creates the schema and streams $DATA/*.csv (default ../data) from this machine.
+# Load 100 times the sample data instead:
+#   java -cp bin/ DataGen /tmp/data100 100 && DATA=/tmp/data100 source ./load.sh flightDB 5432 user
+java -cp lib/*:bin/ BulkLoader $DBNAME $PORT $USER $DATA "${@:4}"
@@ -4,4 +4,7 @@ PORT=$2
 USER=$3
 
 # Example: source ./run.sh flightDB 5432 user
-java -cp lib/*:bin/ DBproject $DBNAME $PORT $USER
+# Serve the operations over HTTP instead: source ./run.sh flightDB 5432 user --http 8080
+# Or on a Unix domain socket for client.sh: source ./run.sh flightDB 5432 user --socket /tmp/dbproject.sock
+# Settings go in JAVA_OPTS: JAVA_OPTS="-Ddbproject.resultCache.maxBytes=16777216" source ./run.sh flightDB 5432 user
+java $JAVA_OPTS -cp lib/*:bin/ DBproject $DBNAME $PORT $USER "${@:4}"
@@ -0,0 +1,176 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * This class benchmarks every data access path of DBproject and the
+ * operations built on them against a running database.  Each benchmark is
+ * warmed up, then run for a fixed time on a number of threads, and reports
+ * throughput and p50/p99/p999 latency.  With -Ddbproject.bench.out=<file>
+ * every result is also appended to a CSV file together with a label
+ * (-Ddbproject.bench.label, e.g. before/after) for comparing runs.
+ *
+ *   java Bench <dbname> <port> <user> [benchmark name pattern]
+ *
+ * Other settings: dbproject.bench.threads (1), dbproject.bench.warmupSeconds
+ * (5) and dbproject.bench.seconds (10).  The write benchmarks only rewrite
+ * rows with their own values, so the data is unchanged by a run.
+ *
+ */
+
+public class Bench{
+
+	/**
+	 * One call of the path being measured.
+	 */
+	public interface Op{
+		void run(DBproject esql) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3){
+			System.err.println("Usage: java [-classpath <classpath>] " + Bench.class.getName() +
+				" <dbname> <port> <user> [benchmark name pattern]");
+			return;
+		}
+		String pattern = args.length > 3 ? args[3] : ".*";
+		int threads = Integer.getInteger("dbproject.bench.threads", 1);
+		long warmup = Long.getLong("dbproject.bench.warmupSeconds", 5L) * 1000000000L;
+		long measure = Long.getLong("dbproject.bench.seconds", 10L) * 1000000000L;
+		String out = System.getProperty("dbproject.bench.out");
+		String label = System.getProperty("dbproject.bench.label", "");
+
+		if (System.getProperty("dbproject.pool.maxSize") == null){
+			System.setProperty("dbproject.pool.maxSize", Integer.toString(threads));
+		}
+		Class.forName("org.postgresql.Driver");
+		DBproject esql = new DBproject(args[0], args[1], args[2], "");
+		try{
+			for (Map.Entry<String, Op> bench : benchmarks(esql).entrySet()){
+				if (!bench.getKey().matches(pattern)){
+					continue;
+				}
+				run(esql, bench.getValue(), threads, warmup);
+				long start = System.nanoTime();
+				LatencyHistogram latencies = run(esql, bench.getValue(), threads, measure);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				double throughput = latencies.getCount() / seconds;
+				System.out.println(String.format("%-28s %10.0f ops/s  %s", bench.getKey(), throughput, latencies.summary()));
+				if (out != null){
+					append(out, label, bench.getKey(), threads, throughput, latencies);
+				}
+			}//end for
+		}finally{
+			esql.cleanup();
+		}
+	}
+
+	/**
+	 * The benchmarks by name, with sample values read from the database.
+	 */
+	static Map<String, Op> benchmarks(DBproject esql) throws Exception {
+		TypedResult sample = esql.executeQueryAndReturnTyped(new TypedResult(),
+			"SELECT R.cid, R.fid, R.status, F.actual_departure_date, FI.pilot_id " +
+			"FROM Reservation R, Flight F, FlightInfo FI WHERE F.fnum = R.fid AND FI.flight_id = F.fnum LIMIT 1");
+		if (sample.isEmpty()){
+			throw new IllegalStateException("No reservation on a flight with a plane to take sample values from");
+		}
+		int cid = sample.getInt(0, "cid");
+		int fnum = sample.getInt(0, "fid");
+		String status = sample.getString(0, "status");
+		String date = sample.getString(0, "actual_departure_date");
+		int pilotId = sample.getInt(0, "pilot_id");
+		Writer sink = Writer.nullWriter();
+
+		Map<String, Op> benchmarks = new LinkedHashMap<String, Op>();
+		benchmarks.put("executeQuery", e -> e.executeQuery(Queries.FLIGHT_BY_ID, fnum));
+		benchmarks.put("executeQueryAndReturnResult", e -> e.executeQueryAndReturnResult(Queries.FLIGHT_BY_ID, fnum));
+		benchmarks.put("executeQueryAndReturnTyped", e -> e.executeQueryAndReturnTyped(new TypedResult(), Queries.FLIGHT_BY_ID, fnum));
+		benchmarks.put("executeQueryAndPrintResult", e -> e.executeQueryAndPrintResult(sink, ResultPrinter.Format.TSV, Queries.FLIGHT_BY_ID, fnum));
+		// rewrites the pilot's nationality with itself
+		benchmarks.put("executeUpdate", e -> e.executeUpdate("UPDATE Pilot SET nationality = nationality WHERE id = ?", pilotId));
+		// the customer already holds the reservation, so nothing is written
+		benchmarks.put("BookFlight", e -> Operations.bookFlight(e, cid, fnum, status));
+		benchmarks.put("isFlightFull", e -> Operations.isFlightFull(e, fnum));
+		benchmarks.put("isFlightFull.uncached", e -> {
+			e.getSeatCache().invalidate(fnum);
+			Operations.isFlightFull(e, fnum);
+		});
+		benchmarks.put("ListNumberOfAvailableSeats", e -> Operations.availableSeats(e, fnum, date));
+		benchmarks.put("ListsTotalNumberOfRepairsPerPlane", e -> e.executeQueryAndPrintResult(sink, ResultPrinter.Format.TSV, Queries.REPAIRS_PER_PLANE));
+		benchmarks.put("ListTotalNumberOfRepairsPerYear", e -> e.executeQueryAndPrintResult(sink, ResultPrinter.Format.TSV, Queries.REPAIRS_PER_YEAR));
+		return benchmarks;
+	}
+
+	/**
+	 * Calls the operation from every thread for the given time and returns the
+	 * latencies of all the calls.
+	 */
+	static LatencyHistogram run(DBproject esql, Op op, int threads, long nanos) throws Exception {
+		LatencyHistogram latencies = new LatencyHistogram();
+		AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++){
+			workers[t] = new Thread(() -> {
+				try{
+					start.await();
+					long end = System.nanoTime() + nanos;
+					long now = System.nanoTime();
+					while (now < end && failure.get() == null){
+						op.run(esql);
+						long done = System.nanoTime();
+						latencies.record(done - now);
+						now = done;
+					}
+				}catch (Exception e){
+					failure.compareAndSet(null, e);
+				}
+			}, "bench-" + t);
+			workers[t].start();
+		}
+		start.countDown();
+		for (Thread worker : workers){
+			worker.join();
+		}
+		if (failure.get() != null){
+			throw failure.get();
+		}
+		return latencies;
+	}
+
+	private static void append(String file, String label, String name, int threads, double throughput, LatencyHistogram latencies) throws IOException {
+		boolean header = !new File(file).exists();
+		PrintWriter csv = new PrintWriter(new FileWriter(file, true));
+		try{
+			if (header){
+				csv.println("time,label,benchmark,threads,ops_per_sec,p50_ns,p99_ns,p999_ns,max_ns");
+			}
+			csv.println(String.format(Locale.ROOT, "%s,%s,%s,%d,%.1f,%d,%d,%d,%d", Instant.now(), label, name, threads, throughput,
+				latencies.percentile(0.50), latencies.percentile(0.99), latencies.percentile(0.999), latencies.getMax()));
+		}finally{
+			csv.close();
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * This class books one hot flight from many threads at once and checks that
+ * the flight was not oversold: num_sold may not pass the plane's seats and
+ * must have grown by exactly the number of seats handed out.  It reports
+ * bookings per second and latency percentiles.  It writes reservations, so
+ * run it against a scratch database.
+ *
+ *   java BookingBench <dbname> <port> <user> <flight number> [threads] [bookings per thread]
+ *
+ */
+
+public class BookingBench{
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 4){
+			System.err.println("Usage: java [-classpath <classpath>] " + BookingBench.class.getName() +
+				" <dbname> <port> <user> <flight number> [threads] [bookings per thread]");
+			return;
+		}
+		int flightNumber = Integer.parseInt(args[3]);
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+		int perThread = args.length > 5 ? Integer.parseInt(args[5]) : 100;
+
+		// one connection per booking thread so that they really contend on the flight row
+		if (System.getProperty("dbproject.pool.maxSize") == null){
+			System.setProperty("dbproject.pool.maxSize", Integer.toString(threads));
+		}
+		Class.forName("org.postgresql.Driver");
+		DBproject esql = new DBproject(args[0], args[1], args[2], "");
+		try{
+			run(esql, flightNumber, threads, perThread);
+		}finally{
+			esql.cleanup();
+		}
+	}
+
+	static void run(DBproject esql, int flightNumber, int threads, int perThread) throws Exception {
+		TypedResult customers = esql.executeQueryAndReturnTyped(new TypedResult(), Queries.CUSTOMER_IDS);
+		int[] customerIds = new int[customers.size()];
+		for (int i = 0; i < customerIds.length; i++){
+			customerIds[i] = customers.getInt(i, "id");
+		}
+
+		int seats = esql.executeQueryAndReturnTyped(new TypedResult(), Queries.PLANE_SEATS_BY_FLIGHT, flightNumber).getInt(0, "seats");
+		int soldBefore = sold(esql, flightNumber);
+		int takenBefore = taken(esql, flightNumber);
+		System.out.println(String.format("Flight %d: %d seats, %d sold before the run", flightNumber, seats, soldBefore));
+
+		long[] latencies = new long[threads * perThread];
+		AtomicInteger confirmed = new AtomicInteger();
+		AtomicInteger waitlisted = new AtomicInteger();
+		AtomicInteger unchanged = new AtomicInteger();
+		AtomicInteger errors = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++){
+			int offset = t * perThread;
+			workers[t] = new Thread(() -> {
+				try{
+					start.await();
+				}catch (InterruptedException e){
+					return;
+				}
+				for (int i = 0; i < perThread; i++){
+					int customerId = customerIds[(offset + i) % customerIds.length];
+					long begin = System.nanoTime();
+					try{
+						String status = Operations.bookFlight(esql, customerId, flightNumber, "C");
+						if (status.equals("C")) confirmed.incrementAndGet();
+						else if (status.equals("W")) waitlisted.incrementAndGet();
+						else unchanged.incrementAndGet();
+					}catch (Exception e){
+						errors.incrementAndGet();
+					}
+					latencies[offset + i] = System.nanoTime() - begin;
+				}
+			}, "booker-" + t);
+			workers[t].start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread worker : workers){
+			worker.join();
+		}
+		double seconds = (System.nanoTime() - begin) / 1e9;
+
+		int soldAfter = sold(esql, flightNumber);
+		int takenAfter = taken(esql, flightNumber);
+		Arrays.sort(latencies);
+		System.out.println(String.format("%d bookings by %d threads in %.2f s: %.0f bookings/s",
+			latencies.length, threads, seconds, latencies.length / seconds));
+		System.out.println(String.format("confirmed=%d waitlisted=%d unchanged=%d errors=%d",
+			confirmed.get(), waitlisted.get(), unchanged.get(), errors.get()));
+		System.out.println(String.format("latency p50=%.2fms p99=%.2fms max=%.2fms",
+			percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6, latencies[latencies.length - 1] / 1e6));
+
+		boolean oversold = soldAfter > Math.max(seats, soldBefore);
+		boolean consistent = soldAfter - soldBefore == takenAfter - takenBefore;
+		System.out.println(String.format("num_sold %d -> %d, seats handed out %d: %s",
+			soldBefore, soldAfter, takenAfter - takenBefore, !oversold && consistent ? "OK" : "OVERSOLD OR INCONSISTENT"));
+	}
+
+	private static int sold(DBproject esql, int flightNumber) throws Exception {
+		return esql.executeQueryAndReturnTyped(new TypedResult(), Queries.FLIGHT_NUM_SOLD, flightNumber).getInt(0, "num_sold");
+	}
+
+	// reservations holding a seat, i.e. confirmed or reserved
+	private static int taken(DBproject esql, int flightNumber) throws Exception {
+		return Operations.passengersWithStatus(esql, flightNumber, "C") + Operations.passengersWithStatus(esql, flightNumber, "R");
+	}
+
+	private static long percentile(long[] sorted, double p){
+		return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+
+/**
+ * This class creates the schema and loads the CSVs from the client with the
+ * driver's COPY FROM STDIN, so the files do not have to be on the database
+ * host.  Tables are loaded in two waves, the tables referenced by foreign
+ * keys first, and the tables of a wave in parallel.  Large files are split at
+ * line boundaries into chunks that are copied on separate connections.  The
+ * keys, sequences and triggers of constraints.sql are created only after all
+ * the data is in.
+ *
+ *   java BulkLoader <dbname> <port> <user> <data dir> [threads]
+ *
+ * Set -Ddbproject.load.schema=false to load into existing, empty tables
+ * without running schema.sql and constraints.sql.
+ *
+ */
+
+public class BulkLoader{
+
+	/**
+	 * A table, the CSV it is loaded from and the CSV's columns.
+	 */
+	static final class Table{
+		final String name;
+		final String file;
+		final String columns;
+		final AtomicLong rows = new AtomicLong();
+		final AtomicLong bytesDone = new AtomicLong();
+		long bytes = 0;
+		volatile long startNanos = 0;
+		volatile long endNanos = 0;
+
+		Table(String name, String file, String columns){
+			this.name = name;
+			this.file = file;
+			this.columns = columns;
+		}
+	}
+
+	/**
+	 * A byte range of a table's file, starting and ending on a line boundary.
+	 */
+	static final class Chunk{
+		final Table table;
+		final Path path;
+		final long start;
+		final long end;
+
+		Chunk(Table table, Path path, long start, long end){
+			this.table = table;
+			this.path = path;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	// the second wave references the first
+	static Table[][] waves(){
+		return new Table[][]{
+			{
+				new Table("Customer", "customer.csv", "id, fname, lname, gtype, dob, address, phone, zipcode"),
+				new Table("Pilot", "pilots.csv", "id, fullname, nationality"),
+				new Table("Plane", "planes.csv", "id, make, model, age, seats"),
+				new Table("Technician", "technician.csv", "id, full_name"),
+				new Table("Flight", "flights.csv", "fnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_airport, departure_airport")
+			},
+			{
+				new Table("Reservation", "reservation.csv", "rnum, cid, fid, status"),
+				new Table("FlightInfo", "flightinfo.csv", "fiid, flight_id, pilot_id, plane_id"),
+				new Table("Repairs", "repairs.csv", "rid, repair_date, repair_code, pilot_id, plane_id, technician_id"),
+				new Table("Schedule", "schedule.csv", "id, flightNum, departure_time, arrival_time")
+			}
+		};
+	}
+
+	private final String _url;
+	private final Properties _props;
+	private final int _threads;
+	private final long _chunkBytes;
+	private final int _bufferSize;
+
+	public BulkLoader(String url, Properties props, int threads, long chunkBytes, int bufferSize){
+		this._url = url;
+		this._props = props;
+		this._threads = threads;
+		this._chunkBytes = chunkBytes;
+		this._bufferSize = bufferSize;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 4){
+			System.err.println("Usage: java [-classpath <classpath>] " + BulkLoader.class.getName() +
+				" <dbname> <port> <user> <data dir> [threads]");
+			return;
+		}
+		Class.forName("org.postgresql.Driver");
+		Properties props = new Properties();
+		props.setProperty("user", args[2]);
+		props.setProperty("password", "");
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		BulkLoader loader = new BulkLoader("jdbc:postgresql://localhost:" + args[1] + "/" + args[0], props, threads,
+			Long.getLong("dbproject.load.chunkBytes", 64L << 20),
+			Integer.getInteger("dbproject.load.bufferSize", 1 << 16));
+
+		Path sqlDir = Paths.get(System.getProperty("dbproject.load.sqlDir", "../sql"));
+		boolean schema = Boolean.parseBoolean(System.getProperty("dbproject.load.schema", "true"));
+		long start = System.nanoTime();
+		if (schema){
+			loader.runScript(sqlDir.resolve("schema.sql"));
+		}
+		Table[][] waves = waves();
+		for (Table[] wave : waves){
+			loader.load(Paths.get(args[3]), wave);
+		}
+		if (schema){
+			long keys = System.nanoTime();
+			loader.runScript(sqlDir.resolve("constraints.sql"));
+			System.out.println(String.format("Created keys, sequences and triggers in %.1f s", (System.nanoTime() - keys) / 1e9));
+		}
+		System.out.println(String.format("Done in %.1f s", (System.nanoTime() - start) / 1e9));
+	}
+
+	/**
+	 * Runs a SQL script of plain statements (no psql meta-commands).
+	 */
+	public void runScript(Path script) throws IOException, SQLException {
+		String sql = new String(Files.readAllBytes(script), StandardCharsets.UTF_8);
+		Connection conn = DriverManager.getConnection(this._url, this._props);
+		try{
+			Statement stmt = conn.createStatement();
+			stmt.execute(sql);
+			stmt.close();
+		}finally{
+			conn.close();
+		}
+	}
+
+	/**
+	 * Loads the tables of one wave in parallel, reporting progress while it
+	 * runs and the rows per second of every table at the end.
+	 */
+	public void load(Path dataDir, Table[] wave) throws Exception {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		long totalBytes = 0;
+		for (Table table : wave){
+			Path path = dataDir.resolve(table.file);
+			table.bytes = Files.size(path);
+			totalBytes += table.bytes;
+			chunks.addAll(split(table, path, this._chunkBytes));
+		}
+
+		ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Math.min(this._threads, chunks.size())));
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+		long start = System.nanoTime();
+		long total = totalBytes;
+		reporter.scheduleAtFixedRate(() -> progress(wave, total, start),
+			2, 2, TimeUnit.SECONDS);
+		try{
+			List<Future<?>> done = new ArrayList<Future<?>>();
+			for (Chunk chunk : chunks){
+				done.add(workers.submit(() -> {
+					copy(chunk);
+					return null;
+				}));
+			}
+			for (Future<?> f : done){
+				f.get();
+			}
+		}finally{
+			reporter.shutdownNow();
+			workers.shutdownNow();
+		}
+
+		for (Table table : wave){
+			double seconds = Math.max(1, table.endNanos - table.startNanos) / 1e9;
+			System.out.println(String.format("%-12s %,12d rows in %7.2f s  %,12.0f rows/s",
+				table.name, table.rows.get(), seconds, table.rows.get() / seconds));
+		}
+	}
+
+	private void copy(Chunk chunk) throws IOException, SQLException {
+		Table table = chunk.table;
+		synchronized (table){
+			if (table.startNanos == 0){
+				table.startNanos = System.nanoTime();
+			}
+		}
+		String sql = "COPY " + table.name + " (" + table.columns + ") FROM STDIN WITH DELIMITER ','";
+		Connection conn = DriverManager.getConnection(this._url, this._props);
+		RandomAccessFile file = new RandomAccessFile(chunk.path.toFile(), "r");
+		try{
+			file.seek(chunk.start);
+			CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+			long rows = copy.copyIn(sql, new RangeInputStream(file, chunk.end - chunk.start, table.bytesDone), this._bufferSize);
+			table.rows.addAndGet(rows);
+		}finally{
+			file.close();
+			conn.close();
+		}
+		synchronized (table){
+			table.endNanos = Math.max(table.endNanos, System.nanoTime());
+		}
+	}
+
+	private static void progress(Table[] wave, long totalBytes, long start){
+		long done = 0;
+		long rows = 0;
+		for (Table table : wave){
+			done += table.bytesDone.get();
+			rows += table.rows.get();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("  %5.1f%% of %,d MB, %,.1f MB/s, %,d rows committed",
+			100.0 * done / Math.max(1, totalBytes), totalBytes >> 20, (done >> 20) / seconds, rows));
+	}
+
+	/**
+	 * Splits a file into chunks of about chunkBytes that end on a newline.
+	 * COPY text format escapes newlines inside values, so every newline ends
+	 * a row.
+	 */
+	static List<Chunk> split(Table table, Path path, long chunkBytes) throws IOException {
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		long size = Files.size(path);
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), "r");
+		try{
+			long start = 0;
+			while (start < size){
+				long end = Math.min(size, start + chunkBytes);
+				if (end < size){
+					file.seek(end);
+					int b;
+					while ((b = file.read()) != -1 && b != '\n'){
+						end++;
+					}
+					end = Math.min(size, end + 1);
+				}
+				chunks.add(new Chunk(table, path, start, end));
+				start = end;
+			}//end while
+		}finally{
+			file.close();
+		}
+		return chunks;
+	}
+
+	/**
+	 * Reads at most length bytes of a file from its current position and
+	 * counts them for the progress report.
+	 */
+	static final class RangeInputStream extends InputStream{
+		private final RandomAccessFile _file;
+		private final AtomicLong _counter;
+		private long _remaining;
+
+		RangeInputStream(RandomAccessFile file, long length, AtomicLong counter){
+			this._file = file;
+			this._remaining = length;
+			this._counter = counter;
+		}
+
+		public int read() throws IOException {
+			byte[] one = new byte[1];
+			return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (this._remaining <= 0){
+				return -1;
+			}
+			int n = this._file.read(b, off, (int) Math.min(len, this._remaining));
+			if (n > 0){
+				this._remaining -= n;
+				this._counter.addAndGet(n);
+			}
+			return n;
+		}
+	}
+}
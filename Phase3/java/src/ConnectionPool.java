@@ -0,0 +1,379 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * This class keeps a bounded set of physical connections to one database so
+ * that concurrent sessions do not each pay the connect and authentication
+ * handshake.  Idle connections are validated on checkout once they have been
+ * idle for a while, and closed by a background task after the idle timeout as
+ * long as the pool stays above its minimum size.
+ *
+ */
+
+public class ConnectionPool{
+
+	/**
+	 * A physical connection together with the prepared statements cached on it.
+	 */
+	public static class PooledConnection{
+		private final Connection _connection;
+		private final StatementCache _statements;
+		private long _lastUsed;
+
+		PooledConnection(Connection connection, int statementCacheSize){
+			this._connection = connection;
+			this._statements = new StatementCache(connection, statementCacheSize);
+			this._lastUsed = System.currentTimeMillis();
+		}
+
+		public Connection getConnection(){
+			return this._connection;
+		}
+
+		public StatementCache getStatements(){
+			return this._statements;
+		}
+
+		void close(){
+			this._statements.close();
+			try{
+				this._connection.close();
+			}catch (SQLException e){
+				// ignored.
+			}
+		}
+	}
+
+	private final String _url;
+	private final Properties _props;
+	private final int _minSize;
+	private final int _maxSize;
+	private final long _idleTimeoutMillis;
+	private final long _validationIntervalMillis;
+	private final long _checkoutTimeoutMillis;
+	private final int _statementCacheSize;
+
+	private final ReentrantLock _lock = new ReentrantLock();
+	private final Condition _available = this._lock.newCondition();
+	//most recently returned connection is handed out first
+	private final ArrayDeque<PooledConnection> _idle = new ArrayDeque<PooledConnection>();
+	private int _total = 0;
+	private boolean _closed = false;
+	private final ScheduledExecutorService _evictor;
+
+	//checkout wait metrics
+	private long _checkouts = 0;
+	private long _waits = 0;
+	private long _timeouts = 0;
+	private long _totalWaitNanos = 0;
+	private long _maxWaitNanos = 0;
+	private long _created = 0;
+	private long _evicted = 0;
+	private long _invalidated = 0;
+
+	public ConnectionPool(String url, Properties props, int minSize, int maxSize, long idleTimeoutMillis,
+			long validationIntervalMillis, long checkoutTimeoutMillis, int statementCacheSize) throws SQLException {
+		if (minSize < 0 || maxSize < 1 || minSize > maxSize){
+			throw new IllegalArgumentException("Invalid pool size: min " + minSize + ", max " + maxSize);
+		}
+		this._url = url;
+		this._props = props;
+		this._minSize = minSize;
+		this._maxSize = maxSize;
+		this._idleTimeoutMillis = idleTimeoutMillis;
+		this._validationIntervalMillis = validationIntervalMillis;
+		this._checkoutTimeoutMillis = checkoutTimeoutMillis;
+		this._statementCacheSize = statementCacheSize;
+
+		// open the minimum number of connections up front so that a bad URL fails fast
+		for (int i = 0; i < minSize; i++){
+			this._idle.push(open());
+			this._total++;
+		}
+
+		this._evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "pool-evictor");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(1000, idleTimeoutMillis / 2);
+		this._evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Hands out a connection, waiting up to the checkout timeout when every
+	 * connection is in use and the pool is at its maximum size.
+	 *
+	 * @return a validated connection that must be given back with checkin
+	 * @throws java.sql.SQLException when no connection became available in time
+	 */
+	public PooledConnection checkout() throws SQLException {
+		long start = System.nanoTime();
+		boolean waited = false;
+		while (true){
+			PooledConnection pc = null;
+			boolean create = false;
+			this._lock.lock();
+			try{
+				long deadline = start + TimeUnit.MILLISECONDS.toNanos(this._checkoutTimeoutMillis);
+				while (!this._closed && this._idle.isEmpty() && this._total >= this._maxSize){
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0){
+						this._timeouts++;
+						throw new SQLException("Timed out after " + this._checkoutTimeoutMillis + " ms waiting for a connection", "08001");
+					}
+					waited = true;
+					try{
+						this._available.awaitNanos(remaining);
+					}catch (InterruptedException e){
+						Thread.currentThread().interrupt();
+						throw new SQLException("Interrupted while waiting for a connection", "08001");
+					}
+				}
+				if (this._closed){
+					throw new SQLException("Connection pool is closed", "08003");
+				}
+				if (!this._idle.isEmpty()){
+					pc = this._idle.pop();
+				}
+				else {
+					// reserve the slot before connecting so the pool never exceeds its maximum
+					this._total++;
+					create = true;
+				}
+			}finally{
+				this._lock.unlock();
+			}
+
+			if (create){
+				try{
+					pc = open();
+				}catch (SQLException e){
+					release();
+					throw e;
+				}
+			}
+			else if (!validate(pc)){
+				// the server dropped this one, discard it and try again
+				pc.close();
+				release();
+				this._lock.lock();
+				try{
+					this._invalidated++;
+				}finally{
+					this._lock.unlock();
+				}
+				continue;
+			}
+			recordCheckout(System.nanoTime() - start, waited);
+			return pc;
+		}
+	}
+
+	/**
+	 * Gives a connection back to the pool.  Broken connections are closed
+	 * instead so that the next checkout opens a fresh one.
+	 *
+	 * @param pc the connection obtained from checkout
+	 * @param broken true when the connection failed while in use
+	 */
+	public void checkin(PooledConnection pc, boolean broken){
+		if (!broken){
+			try{
+				// never hand out a connection in the middle of a transaction
+				if (!pc._connection.getAutoCommit()){
+					pc._connection.rollback();
+					pc._connection.setAutoCommit(true);
+				}
+			}catch (SQLException e){
+				broken = true;
+			}
+		}
+		if (broken){
+			pc.close();
+			release();
+			return;
+		}
+		pc._lastUsed = System.currentTimeMillis();
+		this._lock.lock();
+		try{
+			if (this._closed){
+				pc.close();
+				this._total--;
+				return;
+			}
+			this._idle.push(pc);
+			this._available.signal();
+		}finally{
+			this._lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes every idle connection and stops handing out new ones.  Connections
+	 * still checked out are closed when they are given back.
+	 */
+	public void close(){
+		this._evictor.shutdownNow();
+		this._lock.lock();
+		try{
+			this._closed = true;
+			while (!this._idle.isEmpty()){
+				this._idle.pop().close();
+				this._total--;
+			}
+			this._available.signalAll();
+		}finally{
+			this._lock.unlock();
+		}
+	}
+
+	private PooledConnection open() throws SQLException {
+		Connection connection = DriverManager.getConnection(this._url, this._props);
+		this._lock.lock();
+		try{
+			this._created++;
+		}finally{
+			this._lock.unlock();
+		}
+		return new PooledConnection(connection, this._statementCacheSize);
+	}
+
+	private boolean validate(PooledConnection pc){
+		if (System.currentTimeMillis() - pc._lastUsed < this._validationIntervalMillis){
+			return true;
+		}
+		try{
+			return pc._connection.isValid(5);
+		}catch (SQLException e){
+			return false;
+		}
+	}
+
+	// gives back the slot of a connection that was closed or never opened
+	private void release(){
+		this._lock.lock();
+		try{
+			this._total--;
+			this._available.signal();
+		}finally{
+			this._lock.unlock();
+		}
+	}
+
+	private void recordCheckout(long waitNanos, boolean waited){
+		this._lock.lock();
+		try{
+			this._checkouts++;
+			if (waited){
+				this._waits++;
+			}
+			this._totalWaitNanos += waitNanos;
+			if (waitNanos > this._maxWaitNanos){
+				this._maxWaitNanos = waitNanos;
+			}
+		}finally{
+			this._lock.unlock();
+		}
+	}
+
+	private void evictIdle(){
+		long now = System.currentTimeMillis();
+		this._lock.lock();
+		try{
+			// the eldest idle connections sit at the end of the deque
+			Iterator<PooledConnection> it = this._idle.descendingIterator();
+			while (it.hasNext() && this._total > this._minSize){
+				PooledConnection pc = it.next();
+				if (now - pc._lastUsed < this._idleTimeoutMillis){
+					break;
+				}
+				it.remove();
+				pc.close();
+				this._total--;
+				this._evicted++;
+			}
+		}finally{
+			this._lock.unlock();
+		}
+	}
+
+	//================================ Metrics ================================
+
+	public int getMaxSize(){
+		return this._maxSize;
+	}
+
+	public int getTotal(){
+		this._lock.lock();
+		try{
+			return this._total;
+		}finally{
+			this._lock.unlock();
+		}
+	}
+
+	public int getIdle(){
+		this._lock.lock();
+		try{
+			return this._idle.size();
+		}finally{
+			this._lock.unlock();
+		}
+	}
+
+	public long getCheckouts(){
+		this._lock.lock();
+		try{
+			return this._checkouts;
+		}finally{
+			this._lock.unlock();
+		}
+	}
+
+	public long getTotalWaitNanos(){
+		this._lock.lock();
+		try{
+			return this._totalWaitNanos;
+		}finally{
+			this._lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns a one line summary of the pool size and checkout wait times.
+	 */
+	public String stats(){
+		this._lock.lock();
+		try{
+			double avgWaitMs = this._checkouts == 0 ? 0 : this._totalWaitNanos / 1e6 / this._checkouts;
+			return String.format("pool: total=%d idle=%d max=%d checkouts=%d waited=%d timeouts=%d avgWait=%.3fms maxWait=%.3fms created=%d evicted=%d invalidated=%d",
+				this._total, this._idle.size(), this._maxSize, this._checkouts, this._waits, this._timeouts,
+				avgWaitMs, this._maxWaitNanos / 1e6, this._created, this._evicted, this._invalidated);
+		}finally{
+			this._lock.unlock();
+		}
+	}
+}
@@ -10,20 +10,28 @@
  *
  */
 
-import java.sql.DriverManager;
-import java.sql.Connection;
 import java.sql.Statement;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.io.File;
 import java.io.FileReader;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Random; 
+import java.util.Collections;
+import java.util.Properties;
 
 
 /**
@@ -33,10 +41,58 @@ import java.util.Random;
  */
 
 public class DBproject{
-	//reference to physical database connection
-	private Connection _connection = null;
+	//pool of physical database connections
+	private ConnectionPool _pool = null;
+	//primary key allocators of the tables without natural keys
+	private final IdAllocator _reservationIds = new IdAllocator(this, "reservation_rnum_hi");
+	private final IdAllocator _flightInfoIds = new IdAllocator(this, "flightinfo_fiid_hi");
+	private final IdAllocator _scheduleIds = new IdAllocator(this, "schedule_id_hi");
+	//streaming replicas for read-only queries, null unless dbproject.replicas is set
+	private ReplicaRouter _replicas = null;
+	//what the read-only work of each thread reads, null outside readOnly
+	private final ThreadLocal<Object> _readKey = new ThreadLocal<Object>();
+	private static final Object ANY_KEY = new Object();
+	//seat availability by flight, kept current by the notification listener
+	private final SeatCache _seatCache = new SeatCache(this, Integer.getInteger("dbproject.seatCache.maxSize", 10000));
+	private NotifyListener _listener = null;
+	//fills seats freed on a flight from its waitlist, off unless dbproject.waitlist.threads is set
+	private WaitlistPromoter _promoter = null;
+	//scheduled flights as a graph of airports for connection searches, loaded on first use
+	private final RouteGraph _routeGraph = new RouteGraph(this,
+		Integer.getInteger("dbproject.routes.minConnectionMinutes", 45),
+		Integer.getInteger("dbproject.routes.maxConnectionMinutes", 1440));
+	//reservations in primitive arrays for status counts, loaded on first use, null if dbproject.reservationIndex is false
+	private final ReservationIndex _reservationIndex =
+		Boolean.parseBoolean(System.getProperty("dbproject.reservationIndex", "true")) ? new ReservationIndex(this) : null;
+	//results of read-only queries until a table they read is written, null unless dbproject.resultCache.maxBytes is set
+	private final ResultCache _resultCache =
+		Long.getLong("dbproject.resultCache.maxBytes", 0L) > 0 ? new ResultCache(Long.getLong("dbproject.resultCache.maxBytes", 0L)) : null;
+	//latency, outcome and rows of every operation and execute method
+	private final Metrics _metrics = new Metrics(this, Boolean.parseBoolean(System.getProperty("dbproject.metrics.jmx", "true")));
+	//time per statement shape and the log of slow statements
+	private final QueryLog _queryLog = new QueryLog(
+		Long.getLong("dbproject.slowQuery.thresholdMillis", 200L),
+		System.getProperty("dbproject.slowQuery.file", "slow-query.%g.log"),
+		Integer.getInteger("dbproject.slowQuery.maxBytes", 10 << 20),
+		Integer.getInteger("dbproject.slowQuery.files", 5));
 	static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+	//single buffered writer for query results printed to standard out
+	static final Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+
+	//rows fetched per round trip when printing a result through a cursor
+	static final int FETCH_SIZE = Integer.getInteger("dbproject.fetchSize", 1000);
+	static final ResultPrinter.Format PRINT_FORMAT = ResultPrinter.Format.parse(System.getProperty("dbproject.printFormat", "tsv"));
+	//reports rows/sec of printed results to standard error
+	static final boolean PRINT_STATS = Boolean.getBoolean("dbproject.printStats");
 	
+	/**
+	 * Work done on one pooled connection.  The connection is checked out for
+	 * the duration of the call only.
+	 */
+	public interface SqlWork<T>{
+		T run(ConnectionPool.PooledConnection pc) throws SQLException;
+	}
+
 	public DBproject(String dbname, String dbport, String user, String passwd) throws SQLException {
 		System.out.print("Connecting to database...");
 		try{
@@ -44,8 +100,68 @@ public class DBproject{
 			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
 			System.out.println ("Connection URL: " + url + "\n");
 			
-			// obtain a physical connection
-	        this._connection = DriverManager.getConnection(url, user, passwd);
+			// prepare cached statements on the server from their first execution
+			Properties props = new Properties();
+			props.setProperty("user", user);
+			props.setProperty("password", passwd);
+			props.setProperty("prepareThreshold", Integer.toString(Integer.getInteger("dbproject.prepareThreshold", 1)));
+
+			// obtain a pool of physical connections
+	        this._pool = new ConnectionPool(url, props,
+	        	Integer.getInteger("dbproject.pool.minSize", 1),
+	        	Integer.getInteger("dbproject.pool.maxSize", 10),
+	        	Long.getLong("dbproject.pool.idleTimeoutMillis", 600000L),
+	        	Long.getLong("dbproject.pool.validationIntervalMillis", 1000L),
+	        	Long.getLong("dbproject.pool.checkoutTimeoutMillis", 30000L),
+	        	Integer.getInteger("dbproject.statementCacheSize", 64));
+
+			// a pool per replica for the read-only queries
+			String replicas = System.getProperty("dbproject.replicas");
+			if (replicas != null && !replicas.trim().isEmpty()){
+				List<String> urls = new ArrayList<String>();
+				List<ConnectionPool> pools = new ArrayList<ConnectionPool>();
+				for (String replica : replicas.split(",")){
+					replica = replica.trim();
+					String replicaUrl = replica.startsWith("jdbc:") ? replica : "jdbc:postgresql://" + replica + "/" + dbname;
+					urls.add(replicaUrl);
+					pools.add(new ConnectionPool(replicaUrl, props, 0,
+						Integer.getInteger("dbproject.replicas.pool.maxSize", Integer.getInteger("dbproject.pool.maxSize", 10)),
+						Long.getLong("dbproject.pool.idleTimeoutMillis", 600000L),
+						Long.getLong("dbproject.pool.validationIntervalMillis", 1000L),
+						Long.getLong("dbproject.pool.checkoutTimeoutMillis", 30000L),
+						Integer.getInteger("dbproject.statementCacheSize", 64)));
+					System.out.println ("Replica URL: " + replicaUrl);
+				}
+				this._replicas = new ReplicaRouter(urls, pools,
+					Long.getLong("dbproject.replicas.maxLagMillis", 5000L),
+					Long.getLong("dbproject.replicas.lagCheckMillis", 1000L),
+					ReplicaRouter.Selection.parse(System.getProperty("dbproject.replicas.select", "roundRobin")));
+			}
+
+			// listen for changes made by other clients on a dedicated connection
+			this._listener = new NotifyListener(url, props,
+				Integer.getInteger("dbproject.listen.pollMillis", 500),
+				Long.getLong("dbproject.listen.reconnectDelayMillis", 1000L));
+			this._listener.subscribe(SeatCache.CHANNEL, this._seatCache);
+			this._listener.subscribe(SeatCache.CHANNEL, this._routeGraph);
+			if (this._reservationIndex != null){
+				this._listener.subscribe(ReservationIndex.CHANNEL, this._reservationIndex);
+			}
+			if (this._resultCache != null){
+				this._listener.subscribe(ResultCache.CHANNEL, this._resultCache);
+			}
+			int waitlistThreads = Integer.getInteger("dbproject.waitlist.threads", 0);
+			if (waitlistThreads > 0){
+				this._promoter = new WaitlistPromoter(this, waitlistThreads, System.getProperty("dbproject.waitlist.promoteTo", "R"));
+				this._listener.subscribe(SeatCache.CHANNEL, this._promoter);
+			}
+			this._listener.start();
+
+			// serve the measurements to a local Prometheus scraper
+			Integer metricsPort = Integer.getInteger("dbproject.metrics.port");
+			if (metricsPort != null){
+				this._metrics.startEndpoint(metricsPort);
+			}
 	        System.out.println("Done");
 		}catch(Exception e){
 			System.err.println("Error - Unable to Connect to Database: " + e.getMessage());
@@ -56,125 +172,459 @@ public class DBproject{
 	
 	/**
 	 * Method to execute an update SQL statement.  Update SQL instructions
-	 * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
+	 * includes CREATE, INSERT, UPDATE, DELETE, and DROP.  The statement is
+	 * prepared once per connection and reused from the statement cache.
 	 * 
-	 * @param sql the input SQL string
+	 * @param sql the input SQL string with '?' placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return the number of rows affected
 	 * @throws java.sql.SQLException when update failed
 	 * */
-	public void executeUpdate (String sql) throws SQLException { 
-		// creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		// issues the update instruction
-		stmt.executeUpdate (sql);
-
-		// close the instruction
-	    stmt.close ();
+	public int executeUpdate (String sql, Object... params) throws SQLException { 
+		Metrics.Timer timer = this._metrics.execute ("executeUpdate");
+		return run (timer, sql, params, pc -> {
+			// obtains the cached statement and binds the values
+			PreparedStatement stmt = pc.getStatements().prepare (sql);
+			bind (stmt, params);
+
+			// issues the update instruction
+			int rowCount = stmt.executeUpdate ();
+			timer.addRows (rowCount);
+			return rowCount;
+		});
 	}//end executeUpdate
 
 	/**
 	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
 	 * method issues the query to the DBMS and outputs the results to
-	 * standard out.
+	 * standard out in the format set by -Ddbproject.printFormat (tsv, csv or
+	 * fixed).
 	 * 
-	 * @param query the input query string
+	 * @param query the input query string with '?' placeholders
+	 * @param params the values bound to the placeholders, in order
 	 * @return the number of rows returned
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
-	public int executeQueryAndPrintResult (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
-
-		/*
-		 *  obtains the metadata object for the returned result set.  The metadata
-		 *  contains row and column info.
-		 */
-		ResultSetMetaData rsmd = rs.getMetaData ();
-		int numCol = rsmd.getColumnCount ();
-		int rowCount = 0;
-		
-		//iterates through the result set and output them to standard out.
-		boolean outputHeader = true;
-		while (rs.next()){
-			if(outputHeader){
-				for(int i = 1; i <= numCol; i++){
-					System.out.print(rsmd.getColumnName(i) + "\t");
-			    }
-			    System.out.println();
-			    outputHeader = false;
-			}
-			for (int i=1; i<=numCol; ++i)
-				System.out.print (rs.getString (i) + "\t");
-			System.out.println ();
-			++rowCount;
-		}//end while
-		stmt.close ();
-		return rowCount;
+	public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+		return executeQueryAndPrintResult (out, PRINT_FORMAT, query, params);
+	}
+
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT) and
+	 * stream the results to a writer.  Rows are fetched through a cursor,
+	 * FETCH_SIZE at a time, so a result of any size is printed in constant
+	 * memory.
+	 * 
+	 * @param writer where the rows are written
+	 * @param format how the rows are written
+	 * @param query the input query string with '?' placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQueryAndPrintResult (Writer writer, ResultPrinter.Format format, String query, Object... params) throws SQLException {
+		return executeQueryAndPrintResult (writer, format, false, query, params);
+	}
+
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT) and
+	 * stream the results to a writer, as above.
+	 * 
+	 * @param alwaysHeader write the header line even when there are no rows,
+	 *        as files exported for other programs need
+	 */
+	public int executeQueryAndPrintResult (Writer writer, ResultPrinter.Format format, boolean alwaysHeader, String query, Object... params) throws SQLException {
+		Metrics.Timer timer = this._metrics.execute ("executeQueryAndPrintResult");
+		return run (timer, query, params, pc -> {
+			Connection connection = pc.getConnection ();
+			// the driver only fetches through a cursor inside a transaction
+			connection.setAutoCommit (false);
+
+			// obtains the cached statement and binds the values
+			PreparedStatement stmt = pc.getStatements().prepare (query);
+			bind (stmt, params);
+			stmt.setFetchSize (FETCH_SIZE);
+
+			//issues the query instruction and outputs the rows as they arrive
+			ResultSet rs = stmt.executeQuery ();
+			int rowCount;
+			try{
+				rowCount = new ResultPrinter (writer, format, alwaysHeader, PRINT_STATS ? System.err : null).print (rs);
+			}catch (IOException e){
+				throw new SQLException ("Failed to write the query result: " + e.getMessage (), "58030", e);
+			}
+			rs.close ();
+			connection.commit ();
+			connection.setAutoCommit (true);
+			timer.addRows (rowCount);
+			return rowCount;
+		});
 	}
 	
 	/**
 	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
 	 * method issues the query to the DBMS and returns the results as
-	 * a list of records. Each record in turn is a list of attribute values
+	 * a list of records. Each record in turn is a list of attribute values.
+	 * With the result cache on, the records are shared and cannot be changed.
 	 * 
-	 * @param query the input query string
+	 * @param query the input query string with '?' placeholders
+	 * @param params the values bound to the placeholders, in order
 	 * @return the query result as a list of records
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
-	public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException { 
-		//creates a statement object 
-		Statement stmt = this._connection.createStatement (); 
+	public List<List<String>> executeQueryAndReturnResult (String query, Object... params) throws SQLException { 
+		if (this._resultCache != null){
+			return this._resultCache.get ('R', query, params, () -> onPrimary (() -> {
+				List<List<String>> records = new ArrayList<List<String>>();
+				for (List<String> record : queryAndReturnResult (query, params)){
+					records.add (Collections.unmodifiableList (record));
+				}
+				return Collections.unmodifiableList (records);
+			}));
+		}
+		return queryAndReturnResult (query, params);
+	}
+
+	private List<List<String>> queryAndReturnResult (String query, Object... params) throws SQLException { 
+		Metrics.Timer timer = this._metrics.execute ("executeQueryAndReturnResult");
+		return run (timer, query, params, pc -> {
+			// obtains the cached statement and binds the values
+			PreparedStatement stmt = pc.getStatements().prepare (query);
+			bind (stmt, params);
 		
-		//issues the query instruction 
-		ResultSet rs = stmt.executeQuery (query); 
+			//issues the query instruction 
+			ResultSet rs = stmt.executeQuery (); 
 	 
-		/*
-		 * obtains the metadata object for the returned result set.  The metadata 
-		 * contains row and column info. 
-		*/ 
-		ResultSetMetaData rsmd = rs.getMetaData (); 
-		int numCol = rsmd.getColumnCount (); 
-		int rowCount = 0; 
+			/*
+			 * obtains the metadata object for the returned result set.  The metadata 
+			 * contains row and column info. 
+			*/ 
+			ResultSetMetaData rsmd = rs.getMetaData (); 
+			int numCol = rsmd.getColumnCount (); 
 	 
-		//iterates through the result set and saves the data returned by the query. 
-		boolean outputHeader = false;
-		List<List<String>> result  = new ArrayList<List<String>>(); 
-		while (rs.next()){
-			List<String> record = new ArrayList<String>(); 
-			for (int i=1; i<=numCol; ++i) 
-				record.add(rs.getString (i)); 
-			result.add(record); 
-		}//end while 
-		stmt.close (); 
-		return result; 
+			//iterates through the result set and saves the data returned by the query. 
+			List<List<String>> result  = new ArrayList<List<String>>(); 
+			while (rs.next()){
+				List<String> record = new ArrayList<String>(); 
+				for (int i=1; i<=numCol; ++i) 
+					record.add(rs.getString (i)); 
+				result.add(record); 
+			}//end while 
+			rs.close (); 
+			timer.addRows (result.size ());
+			return result; 
+		});
 	}//end executeQueryAndReturnResult
 	
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and loads the results into a typed,
+	 * column oriented result whose buffers are reused from its previous load.
+	 * 
+	 * @param result the result to load, reused across calls
+	 * @param query the input query string with '?' placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return the loaded result
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public TypedResult executeQueryAndReturnTyped (TypedResult result, String query, Object... params) throws SQLException {
+		Metrics.Timer timer = this._metrics.execute ("executeQueryAndReturnTyped");
+		return run (timer, query, params, pc -> {
+			// obtains the cached statement and binds the values
+			PreparedStatement stmt = pc.getStatements().prepare (query);
+			bind (stmt, params);
+
+			//issues the query instruction and reads the rows into the columns
+			ResultSet rs = stmt.executeQuery ();
+			result.load (rs);
+			rs.close ();
+			timer.addRows (result.size ());
+			return result;
+		});
+	}
+
 	/**
 	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
 	 * method issues the query to the DBMS and returns the number of results
 	 * 
-	 * @param query the input query string
+	 * @param query the input query string with '?' placeholders
+	 * @param params the values bound to the placeholders, in order
 	 * @return the number of rows returned
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
-	public int executeQuery (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
+	public int executeQuery (String query, Object... params) throws SQLException {
+		if (this._resultCache != null){
+			return this._resultCache.get ('Q', query, params, () -> onPrimary (() -> queryCount (query, params)));
+		}
+		return queryCount (query, params);
+	}
 
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
+	private int queryCount (String query, Object... params) throws SQLException {
+		Metrics.Timer timer = this._metrics.execute ("executeQuery");
+		return run (timer, query, params, pc -> {
+			// obtains the cached statement and binds the values
+			PreparedStatement stmt = pc.getStatements().prepare (query);
+			bind (stmt, params);
+
+			//issues the query instruction
+			ResultSet rs = stmt.executeQuery ();
+
+			int rowCount = 0;
+
+			//iterates through the result set and count nuber of results.
+			if(rs.next()){
+				rowCount++;
+			}//end while
+			rs.close ();
+			timer.addRows (rowCount);
+			return rowCount;
+		});
+	}
 
-		int rowCount = 0;
+	/**
+	 * Method to execute a unit of related update SQL statements in a single
+	 * transaction.  Runs of consecutive statements with the same SQL are sent
+	 * as one JDBC batch, and the transaction is committed once at the end.
+	 * On any failure the transaction is rolled back, so no statement is
+	 * applied.
+	 * 
+	 * @param statements the SQL strings with '?' placeholders, in order
+	 * @param params the values bound to each statement
+	 * @return the number of rows affected by each statement
+	 * @throws java.sql.SQLException when a statement failed
+	 */
+	int[] executeUnitOfWork (List<String> statements, List<Object[]> params) throws SQLException {
+		Metrics.Timer timer = this._metrics.execute ("executeUnitOfWork");
+		return timer.time (() -> withConnection (pc -> {
+			Connection connection = pc.getConnection ();
+			int[] counts = new int[statements.size ()];
+			connection.setAutoCommit (false);
+			try{
+				int i = 0;
+				while (i < statements.size ()){
+					long start = System.nanoTime ();
+					String sql = statements.get (i);
+					PreparedStatement stmt = pc.getStatements().prepare (sql);
+					int first = i;
+					// batches the run of statements with the same SQL
+					for (; i < statements.size () && statements.get (i).equals (sql); i++){
+						bind (stmt, params.get (i));
+						stmt.addBatch ();
+					}//end for
+					int[] run = stmt.executeBatch ();
+					System.arraycopy (run, 0, counts, first, run.length);
+					this._queryLog.record (sql, params.get (first), System.nanoTime () - start);
+				}//end while
+				connection.commit ();
+			}catch (BatchUpdateException e){
+				connection.rollback ();
+				// the cause carries the SQLState of the failed statement
+				throw e.getNextException () != null ? e.getNextException () : e;
+			}catch (SQLException e){
+				connection.rollback ();
+				throw e;
+			}finally{
+				connection.setAutoCommit (true);
+				if (this._resultCache != null){
+					for (int i = 0; i < statements.size (); i++){
+						if (i == 0 || !statements.get (i).equals (statements.get (i - 1))){
+							this._resultCache.wrote (statements.get (i));
+						}
+					}
+				}
+			}
+			long rows = 0;
+			for (int count : counts){
+				rows += Math.max (0, count);
+			}
+			timer.addRows (rows);
+			return counts;
+		}));
+	}
 
-		//iterates through the result set and count nuber of results.
-		if(rs.next()){
-			rowCount++;
-		}//end while
-		stmt.close ();
-		return rowCount;
+	/**
+	 * Returns an empty unit of work for writes to be committed together.
+	 */
+	public UnitOfWork newUnitOfWork (){
+		return new UnitOfWork (this);
+	}
+
+	/**
+	 * Runs the work of an execute method on a pooled connection, timing it
+	 * in the metrics and by statement shape in the query log.
+	 */
+	private <T> T run (Metrics.Timer timer, String sql, Object[] params, SqlWork<T> work) throws SQLException {
+		long start = System.nanoTime ();
+		try{
+			return timer.time (() -> withConnection (work));
+		}finally{
+			if (this._resultCache != null){
+				this._resultCache.wrote (sql);
+			}
+			this._queryLog.record (sql, params, System.nanoTime () - start);
+		}
+	}
+
+	/**
+	 * Runs the work on a connection checked out from the pool and gives the
+	 * connection back afterwards.  A connection that failed with a connection
+	 * error (SQLState class 08) is discarded instead of being reused.  The
+	 * time spent waiting for the connection is recorded in the metrics.
+	 * 
+	 * @param work the statements to run on the connection
+	 * @return the value returned by the work
+	 * @throws java.sql.SQLException when the work failed
+	 */
+	public <T> T withConnection (SqlWork<T> work) throws SQLException {
+		Object readKey = this._readKey.get ();
+		ReplicaRouter.Replica replica = readKey == null ? null : this._replicas.choose (readKey == ANY_KEY ? null : readKey);
+		ConnectionPool pool = replica == null ? this._pool : replica.getPool ();
+
+		long start = System.nanoTime ();
+		ConnectionPool.PooledConnection pc = pool.checkout ();
+		long checkedOut = System.nanoTime ();
+		this._metrics.connectionWait (checkedOut - start);
+		boolean broken = false;
+		try{
+			T result = work.run (pc);
+			if (replica != null){
+				this._replicas.completed (replica, System.nanoTime () - checkedOut);
+			}
+			return result;
+		}catch (SQLException e){
+			broken = isConnectionError (e) || pc.getConnection().isClosed ();
+			if (broken && replica != null){
+				this._replicas.failed (replica);
+			}
+			throw e;
+		}finally{
+			pool.checkin (pc, broken);
+		}
+	}
+
+	/**
+	 * Runs read-only work, sending its queries to a replica when one has
+	 * replayed the primary closely enough (see ReplicaRouter) and to the
+	 * primary otherwise.  Without dbproject.replicas it simply runs the work.
+	 * The work must not write.
+	 *
+	 * @param key what the work reads, e.g. a flight number, to see this
+	 *        client's writes of it; null when it reads nothing this client writes
+	 * @param call the work
+	 * @return the value returned by the work
+	 * @throws java.sql.SQLException when the work failed
+	 */
+	public <T> T readOnly (Object key, Metrics.Call<T> call) throws SQLException {
+		if (this._replicas == null || this._readKey.get () != null){
+			return call.call ();
+		}
+		this._readKey.set (key == null ? ANY_KEY : key);
+		try{
+			return call.call ();
+		}finally{
+			this._readKey.remove ();
+		}
+	}
+
+	/**
+	 * Runs work on the primary even inside readOnly.  Results kept in the
+	 * result cache are loaded from the primary, so that the invalidations,
+	 * which follow the writes on the primary, apply to them.
+	 */
+	private <T> T onPrimary (Metrics.Call<T> call) throws SQLException {
+		Object readKey = this._readKey.get ();
+		if (readKey == null){
+			return call.call ();
+		}
+		this._readKey.remove ();
+		try{
+			return call.call ();
+		}finally{
+			this._readKey.set (readKey);
+		}
+	}
+
+	/**
+	 * Records a write of this client, so that the read-only work of the
+	 * same key sees it: it goes to a replica only once the replica has
+	 * replayed the WAL position the primary reports now, after the commit.
+	 *
+	 * @param key what was written, e.g. a flight number
+	 */
+	public void wrote (Object key){
+		if (this._replicas == null){
+			return;
+		}
+		long lsn;
+		try{
+			TypedResult result = executeQueryAndReturnTyped (new TypedResult (), Queries.CURRENT_WAL_LSN);
+			lsn = result.getLong (0, "lsn");
+		}catch (SQLException e){
+			// without the position the key is read from the primary until its next write
+			lsn = Long.MAX_VALUE;
+		}
+		this._replicas.wrote (key, lsn);
+	}
+
+	private static boolean isConnectionError (SQLException e){
+		return e.getSQLState () != null && e.getSQLState ().startsWith ("08");
+	}
+
+	public ConnectionPool getPool (){
+		return this._pool;
+	}
+
+	public Metrics getMetrics (){
+		return this._metrics;
+	}
+
+	public RouteGraph getRouteGraph (){
+		return this._routeGraph;
+	}
+
+	public ReservationIndex getReservationIndex (){
+		return this._reservationIndex;
+	}
+
+	public ResultCache getResultCache (){
+		return this._resultCache;
+	}
+
+	public ReplicaRouter getReplicaRouter (){
+		return this._replicas;
+	}
+
+	public WaitlistPromoter getWaitlistPromoter (){
+		return this._promoter;
+	}
+
+	public QueryLog getQueryLog (){
+		return this._queryLog;
+	}
+
+	public IdAllocator getReservationIds (){
+		return this._reservationIds;
+	}
+
+	public IdAllocator getFlightInfoIds (){
+		return this._flightInfoIds;
+	}
+
+	public IdAllocator getScheduleIds (){
+		return this._scheduleIds;
+	}
+
+	public SeatCache getSeatCache (){
+		return this._seatCache;
+	}
+
+	/**
+	 * Binds the values to the placeholders of the prepared statement, in order.
+	 */
+	private static void bind (PreparedStatement stmt, Object[] params) throws SQLException {
+		for (int i = 0; i < params.length; i++){
+			stmt.setObject (i + 1, params[i]);
+		}
 	}
 	
 	/**
@@ -188,36 +638,59 @@ public class DBproject{
 	 */
 	
 	public int getCurrSeqVal(String sequence) throws SQLException {
-		Statement stmt = this._connection.createStatement ();
-		
-		ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
-		if (rs.next()) return rs.getInt(1);
-		return -1;
+		return withConnection (pc -> {
+			Statement stmt = pc.getConnection().createStatement ();
+			
+			ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
+			int value = rs.next() ? rs.getInt(1) : -1;
+			stmt.close ();
+			return value;
+		});
 	}
 
 	/**
-	 * Method to close the physical connection if it is open.
+	 * Method to close the physical connections if they are open.
 	 */
 	public void cleanup(){
-		try{
-			if (this._connection != null){
-				this._connection.close ();
-			}//end if
-		}catch (SQLException e){
-	         // ignored.
-		}//end try
+		this._metrics.close ();
+		if (Boolean.getBoolean("dbproject.slowQuery.report")){
+			System.err.println (this._queryLog.report (20));
+		}
+		this._queryLog.close ();
+		if (this._listener != null){
+			this._listener.close ();
+		}//end if
+		if (this._promoter != null){
+			this._promoter.close ();
+		}//end if
+		if (this._resultCache != null && Boolean.getBoolean("dbproject.pool.logStats")){
+			System.err.println (this._resultCache.stats ());
+		}//end if
+		if (this._replicas != null){
+			if (Boolean.getBoolean("dbproject.pool.logStats")){
+				System.err.println (this._replicas.stats ());
+			}
+			this._replicas.close ();
+		}//end if
+		if (this._pool != null){
+			if (Boolean.getBoolean("dbproject.pool.logStats")){
+				System.err.println (this._pool.stats ());
+			}
+			this._pool.close ();
+		}//end if
 	}//end cleanup
 
 	/**
 	 * The main execution method
 	 * 
-	 * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
+	 * @param args the command line arguments this inclues the <dbname> <port> <user>
+	 *             optionally followed by a service mode, --http <http port> or --socket <socket file>
 	 */
 	public static void main (String[] args) {
-		if (args.length != 3) {
+		if (args.length != 3 && !(args.length == 5 && (args[3].equals("--http") || args[3].equals("--socket")))) {
 			System.err.println (
 				"Usage: " + "java [-classpath <classpath>] " + DBproject.class.getName () +
-		            " <dbname> <port> <user>");
+		            " <dbname> <port> <user> [--http <http port> | --socket <socket file>]");
 			return;
 		}//end if
 		
@@ -241,6 +714,16 @@ public class DBproject{
 			String user = args[2];
 			
 			esql = new DBproject (dbname, dbport, user, "");
+
+			// serve the operations over HTTP or a Unix domain socket until the process is stopped
+			if (args.length == 5 && args[3].equals("--http")){
+				runHttpService (esql, Integer.parseInt (args[4]));
+				return;
+			}
+			if (args.length == 5){
+				runSocketService (esql, Paths.get (args[4]));
+				return;
+			}
 			
 			boolean keepon = true;
 			while(keepon){
@@ -255,7 +738,10 @@ public class DBproject{
 				System.out.println("7. List total number of repairs per plane in descending order");
 				System.out.println("8. List total number of repairs per year in ascending order");
 				System.out.println("9. Find total number of passengers with a given status");
-				System.out.println("10. < EXIT");
+				System.out.println("10. Import flights from a schedule file");
+				System.out.println("11. Search connections between two airports");
+				System.out.println("12. Export reports to files");
+				System.out.println("13. < EXIT");
 				
 				switch (readChoice()){
 					case 1: AddPlane(esql); break;
@@ -267,7 +753,10 @@ public class DBproject{
 					case 7: ListsTotalNumberOfRepairsPerPlane(esql); break;
 					case 8: ListTotalNumberOfRepairsPerYear(esql); break;
 					case 9: FindPassengersCountWithStatus(esql); break;
-					case 10: keepon = false; break;
+					case 10: ImportSchedule(esql); break;
+					case 11: SearchConnections(esql); break;
+					case 12: ExportReports(esql); break;
+					case 13: keepon = false; break;
 				}
 			}
 		}catch(Exception e){
@@ -285,6 +774,46 @@ public class DBproject{
 		}
 	}
 
+	/**
+	 * Serves the operations over HTTP and blocks until the JVM shuts down.
+	 * Concurrent requests are limited to the size of the connection pool.
+	 */
+	public static void runHttpService (DBproject esql, int httpPort) throws Exception {
+		int maxConcurrency = Integer.getInteger("dbproject.http.maxConcurrency", esql.getPool().getMaxSize());
+		HttpService service = new HttpService(esql, httpPort, maxConcurrency, Long.getLong("dbproject.http.queueTimeoutMillis", 1000L));
+		service.start();
+		System.out.println("Serving operations on http://localhost:" + service.getPort() + "/ (Ctrl-C to stop)");
+
+		Thread main = Thread.currentThread();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			service.stop();
+			main.interrupt();
+		}));
+		try{
+			Thread.currentThread().join();
+		}catch (InterruptedException e){
+			// shutting down
+		}
+	}
+
+	public static void runSocketService (DBproject esql, Path path) throws Exception {
+		int maxConcurrency = Integer.getInteger("dbproject.socket.maxConcurrency", esql.getPool().getMaxSize());
+		SocketService service = new SocketService(esql, path, maxConcurrency, Long.getLong("dbproject.socket.queueTimeoutMillis", 1000L));
+		service.start();
+		System.out.println("Serving operations on " + service.getPath() + " (Ctrl-C to stop)");
+
+		Thread main = Thread.currentThread();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			service.stop();
+			main.interrupt();
+		}));
+		try{
+			Thread.currentThread().join();
+		}catch (InterruptedException e){
+			// shutting down
+		}
+	}
+
 	public static int readChoice() {
 		int input;
 		// returns only if a correct value is given.
@@ -316,7 +845,7 @@ public class DBproject{
 		// Validate Plane Id
 		while (true){
 			planeId = readIntegerHelper("Plane id");
-			int rowCount = executeSelectQuery(String.format("SELECT * FROM Plane P WHERE P.id = %d", planeId), esql);	
+			int rowCount = executeSelectQuery(Queries.PLANE_BY_ID, esql, planeId);	
 			if (rowCount > 0){
 				System.out.println("******************************************************");
 				System.out.println("Plane id already exists. Please enter a valid plane id");
@@ -393,9 +922,14 @@ public class DBproject{
 			}
 		}
 		// Create Plane
-		query = String.format("INSERT INTO Plane VALUES (%d, '%s', '%s', %d, %d)", planeId, make, model, year, seats);
 		sucessMessage = String.format("Plane (%d) successfully created", planeId);
-		executeUpdateInsertQuery(query, sucessMessage, esql);
+		try {
+			Operations.addPlane(esql, planeId, make, model, year, seats);
+			printSuccess(sucessMessage);
+		}
+		catch (Exception e){
+			printFailure(e);
+		}
 	}
 
 //=========================================================================================================================================================================
@@ -412,7 +946,7 @@ public class DBproject{
 		// Validate pilot number. If it already exists then keep looping otherwise break
 		while(true){
 			pilotNumber = readIntegerHelper("Pilot number");
-			rowCount = executeSelectQuery(String.format("SELECT * FROM Pilot P WHERE P.id = %d;", pilotNumber), esql); 
+			rowCount = executeSelectQuery(Queries.PILOT_BY_ID, esql, pilotNumber); 
 			if (rowCount > 0){
 				System.out.println("**************************************************************");
 				System.out.println("Pilot number already exists. Please enter a valid Pilot number");
@@ -450,9 +984,14 @@ public class DBproject{
 		}
 
                 // create pilot
-                query = String.format("INSERT INTO Pilot VALUES (%d, '%s', '%s')", pilotNumber, fullname, nationality);
 		sucessMessage = "The Pilot successfully created";
-                executeUpdateInsertQuery(query, sucessMessage, esql);
+		try {
+			Operations.addPilot(esql, pilotNumber, fullname, nationality);
+			printSuccess(sucessMessage);
+		}
+		catch (Exception e){
+			printFailure(e);
+		}
 	
 /*		// update Repairs relation
 		query = String.format("INSERT INTO Repairs(pilot_id) VALUES (%d)", pilotNumber);
@@ -482,7 +1021,7 @@ public class DBproject{
 		// Validate flight number. If it already exists then keep looping otherwise convert it to string and continue reading flight information
 		while (true){
 			flightNumber = readIntegerHelper("Flight number");
-			rowCount = executeSelectQuery(String.format("SELECT * FROM FLIGHT F WHERE F.fnum = %d;", flightNumber), esql);
+			rowCount = executeSelectQuery(Queries.FLIGHT_BY_ID, esql, flightNumber);
 			// If rowCount is greater than 0 then flight with the inputted flight number already exists
 			if (rowCount > 0){
 				System.out.println("****************************************************************");
@@ -567,7 +1106,7 @@ public class DBproject{
 		// Validate Plane Id
 		while (true){
 			planeId = readIntegerHelper("Plane Id");
-			rowCount = executeSelectQuery(String.format("SELECT * FROM Plane P WHERE P.id = %d;", planeId), esql);
+			rowCount = executeSelectQuery(Queries.PLANE_BY_ID, esql, planeId);
 			// If rowCount is 0 then plane does not exist
 			if (rowCount == 0){
 				System.out.println("***************************************************");
@@ -582,7 +1121,7 @@ public class DBproject{
 		// Validate Pilot Id
 		while (true){
 			pilotId = readIntegerHelper("Pilot Id");
-			rowCount = executeSelectQuery(String.format("SELECT * FROM Pilot P WHERE P.id = %d;", pilotId), esql);
+			rowCount = executeSelectQuery(Queries.PILOT_BY_ID, esql, pilotId);
 			// If rowCount is 0 then pilot does not exist
 			if (rowCount == 0){
 				System.out.println("***************************************************");
@@ -594,22 +1133,15 @@ public class DBproject{
 			}
 		}
 
-		// Creates flight
-		query = String.format("INSERT INTO Flight VALUES (%d, %d, %d, %d, '%s', '%s', '%s', '%s')", flightNumber, cost, numSold, numStops, departureDate, arrivalDate, arrivalAirport, departureAirport);
-		sucessMessage = String.format("Flight (%d) successfully created...", flightNumber);
-		executeUpdateInsertQuery(query, sucessMessage, esql);
-
-		// Creates flight Info
-		int flightInfoId = generateValidId();
-		query = String.format("INSERT INTO FlightInfo VALUES(%d, %d, %d, %d)", flightInfoId, flightNumber, pilotId, planeId);
-		sucessMessage = "Flight Information Successfully saved...";
-		executeUpdateInsertQuery(query, sucessMessage, esql);
-
-		int scheduleId = generateValidId();
-		// Creates Schedule
-		query = String.format("INSERT INTO Schedule VALUES(%d, %d, '%s', '%s')", scheduleId, flightNumber, departureDate, arrivalDate);
-		sucessMessage = "Flight Successfully scheduled...";
-		executeUpdateInsertQuery(query, sucessMessage, esql);
+		// Creates flight, flight info and schedule
+		sucessMessage = String.format("Flight (%d) successfully created and scheduled...", flightNumber);
+		try {
+			Operations.addFlight(esql, flightNumber, cost, numSold, numStops, departureDate, arrivalDate, departureAirport, arrivalAirport, planeId, pilotId);
+			printSuccess(sucessMessage);
+		}
+		catch (Exception e){
+			printFailure(e);
+		}
 	}
 
 //=========================================================================================================================================================================
@@ -625,7 +1157,7 @@ public class DBproject{
 	 // Validate Technician id. If it already exists then keep looping otherwise convert it to string and continue reading Technician information
 		while(true){
 			technicianId = readIntegerHelper("Technician id");
-			rowCount = executeSelectQuery(String.format("SELECT * FROM Technician T WHERE T.id = %d;", technicianId), esql);
+			rowCount = executeSelectQuery(Queries.TECHNICIAN_BY_ID, esql, technicianId);
 	                if (rowCount > 0){
 							  System.out.println("****************************************************************");
 							  System.out.println("Technician id already exists. Please enter a valid technician id");
@@ -650,9 +1182,14 @@ public class DBproject{
 		}
 
 		//create technician
-		query = String.format("INSERT INTO Technician VALUES (%d, '%s')", technicianId, fullname);
 		sucessMessage = "The technician successfully created";
-                executeUpdateInsertQuery(query, sucessMessage, esql);
+		try {
+			Operations.addTechnician(esql, technicianId, fullname);
+			printSuccess(sucessMessage);
+		}
+		catch (Exception e){
+			printFailure(e);
+		}
 
 /*		// update Repairs entity
                 query = String.format("INSERT INTO Repairs(technician_id) VALUES (%d)", technicianId);
@@ -682,7 +1219,7 @@ public class DBproject{
 		// Validate customer Id
 		while (true){
 			customerId = readIntegerHelper("Customer ID");
-			int rowCountCustomer = executeSelectQuery(String.format("SELECT * FROM CUSTOMER C WHERE C.id = %d;", customerId), esql);
+			int rowCountCustomer = executeSelectQuery(Queries.CUSTOMER_BY_ID, esql, customerId);
 			// If rowCount is greater than 0 then flight with the inputted flight number already exists
 			if (rowCountCustomer == 0){
 				System.out.println("*********************************************************");
@@ -697,7 +1234,7 @@ public class DBproject{
 		// Validate flight number
 		while (true){
 			flightNumber = readIntegerHelper("Flight number");
-			FlightRecord  = executeSelectQueryGetResults(String.format("SELECT * FROM FLIGHT F WHERE F.fnum = %d;", flightNumber), esql);
+			FlightRecord  = executeSelectQueryGetResults(Queries.FLIGHT_BY_ID, esql, flightNumber);
 			// If rowCount is greater than 0 then flight with the inputted flight number already exists
 			if (FlightRecord.isEmpty()){
 				System.out.println("*********************************************************");
@@ -710,7 +1247,7 @@ public class DBproject{
 			}
 		}
 
-		List<List<String>> ReservationRecord = executeSelectQueryGetResults(String.format("SELECT * FROM Reservation R WHERE R.cid = %d AND R.fid = %d;", customerId, flightNumber), esql);
+		List<List<String>> ReservationRecord = executeSelectQueryGetResults(Queries.RESERVATION_BY_CUSTOMER_AND_FLIGHT, esql, customerId, flightNumber);
 
 		// If a reservation exists
 		if (!ReservationRecord.isEmpty()){
@@ -727,14 +1264,12 @@ public class DBproject{
 				else {
 					confirmed = askForConfirmationOrReservation();
 					if (confirmed){
-						query = String.format("UPDATE Reservation SET status = 'C' where rnum = %s", reservationNum); 
 						sucessMessage = String.format("Successfully changed customer's status to CONFIRMED for flight (%d)", flightNumber);
-						executeUpdateInsertQuery(query, sucessMessage, esql);					
+						executeBooking(esql, customerId, flightNumber, "C", sucessMessage);					
 					}
 					else {
-						query = String.format("UPDATE Reservation SET status = 'R' where rnum = %s", reservationNum); 
 						sucessMessage = String.format("Successfully changed customer's status to RESERVED for flight (%d)", flightNumber);
-						executeUpdateInsertQuery(query, sucessMessage, esql);	
+						executeBooking(esql, customerId, flightNumber, "R", sucessMessage);	
 					}
 				}
 			}// If resereation status is R
@@ -745,9 +1280,8 @@ public class DBproject{
 
 				// Update reservation status to confirm
 				if (procceed){
-					query = String.format("UPDATE Reservation SET status = 'C' WHERE rnum = %s", reservationNum);
 					sucessMessage = String.format("Successfully CONFIRMED resevation (%s) for flight %d ", reservationNum, flightNumber);
-					executeUpdateInsertQuery(query, sucessMessage, esql);
+					executeBooking(esql, customerId, flightNumber, "C", sucessMessage);
 				}
 				else {
 					// User still reserved
@@ -767,9 +1301,8 @@ public class DBproject{
 				procceed = getYesNoAnswer();
 				if (procceed){
 					// Crates a reservation with W status
-					query = String.format("INSERT INTO Reservation VALUES (%d, %d, %d, 'W')", generateValidId(), customerId, flightNumber); 
 					sucessMessage = String.format("Successfully WAITLISTED customer for flight (%d)", flightNumber);
-					executeUpdateInsertQuery(query, sucessMessage, esql);
+					executeBooking(esql, customerId, flightNumber, "W", sucessMessage);
 				}
 				else {
 					System.out.println(String.format("\nCustomer was not WAITLISTED for flight (%d)", flightNumber));
@@ -778,14 +1311,12 @@ public class DBproject{
 			else {
 				confirmed = askForConfirmationOrReservation();
 				if (confirmed){
-					query = String.format("INSERT INTO Reservation VALUES (%d, %d, %d, 'C')", generateValidId() ,customerId, flightNumber); 
 					sucessMessage = String.format("Successfully CONFIRMED customer for flight (%d)", flightNumber);
-					executeUpdateInsertQuery(query, sucessMessage, esql);					
+					executeBooking(esql, customerId, flightNumber, "C", sucessMessage);					
 				}
 				else {
-					query = String.format("INSERT INTO Reservation VALUES (%d, %d, %d, 'R')",  generateValidId(), customerId, flightNumber); 
 					sucessMessage = String.format("Successfully RESERVED customer for flight (%d)", flightNumber);
-					executeUpdateInsertQuery(query, sucessMessage, esql);	
+					executeBooking(esql, customerId, flightNumber, "R", sucessMessage);	
 				}
 			}
 		}
@@ -808,7 +1339,7 @@ public class DBproject{
              //   int totalNumSeats = 0;
 		while(true){
 			flightNum = readIntegerHelper("flight number");
-			rowCount = executeSelectQuery(String.format("SELECT * FROM Flight F WHERE F.fnum = %d;", flightNum), esql);
+			rowCount = executeSelectQuery(Queries.FLIGHT_BY_ID, esql, flightNum);
 			if (rowCount == 0){
 				System.out.println("****************************************************************");
 				System.out.println("There is no flight available. Please enter a valid flight number");
@@ -837,7 +1368,7 @@ public class DBproject{
 */	                //check the depart date and time
 	               departDate = constructDateInput("Departure Date and time");
 	                System.out.println(String.format("%s", departDate));
-			rowCount2 = executeSelectQuery(String.format("SELECT * FROM Flight F WHERE F.actual_departure_date = '%s';", departDate), esql);
+			rowCount2 = executeSelectQuery(Queries.FLIGHT_BY_DEPARTURE_DATE, esql, departDate);
                       
 			if (rowCount2 == 0){
                                 System.out.println("****************************************************************");
@@ -897,18 +1428,19 @@ System.out.println(String.format("%d", ArowCount));
                         System.err.println(e.getMessage());
 		}
 */
-                        query = String.format("SELECT P.seats FROM Plane P, FlightInfo FI, Flight F  WHERE FI.flight_id = F.fnum AND F.fnum = %d AND F.actual_departure_date ='%s' AND FI.plane_id = P.id;",flightNum, departDate);
-                        String totalNumSeats = executeSelectQueryGetResults(query, esql).get(0).get(0);
-			System.out.println(totalNumSeats + String.format(" is the total seats in flight number %d ", flightNum));
-                        // number of reserved seats/ booked seats
-                        query2 = String.format("SELECT COUNT(*) FROM Reservation R, Flight F  WHERE R.fid = F.fnum AND R.status = 'R' AND F.actual_departure_date = '%s';", departDate);
-			String totalNumBooked = executeSelectQueryGetResults(query2, esql).get(0).get(0);
-			System.out.println(totalNumBooked + String.format(" is the total seats which booked in flight number %d ", flightNum));
-                        // number of availble seats
-                        int totalNumSeatsInt = Integer.parseInt(totalNumSeats);
-			int totalNumBookedInt = Integer.parseInt(totalNumBooked);
-			int totalAvailableSeats = totalNumSeatsInt - totalNumBookedInt;
+		try{
+			SeatCache.Availability seats = Operations.availability(esql, flightNum, departDate);
+			int totalNumSeatsInt = seats.getSeats();
+			System.out.println(totalNumSeatsInt + String.format(" is the total seats in flight number %d ", flightNum));
+			// number of sold seats
+			int totalNumBookedInt = seats.getSold();
+			System.out.println(totalNumBookedInt + String.format(" is the total seats which booked in flight number %d ", flightNum));
+			// number of availble seats
+			int totalAvailableSeats = seats.getAvailable();
 			System.out.println(totalAvailableSeats + String.format(" is the total availble seats in flight number %d ", flightNum));
+		}catch (SQLException | IllegalArgumentException e){
+			printFailure(e);
+		}
 	}
 
 //=====================================================================================================================================================================
@@ -916,7 +1448,7 @@ System.out.println(String.format("%d", ArowCount));
 		// Count number of repairs per planes and list them in descending order. Excute query and print
 		try {
 			System.out.println();
-			int rowCount = esql.executeQueryAndPrintResult("SELECT P.id as ID, P.make as Make, P.model as Model, COUNT(R.rid) as NumOfRepairs FROM Plane P, Repairs R WHERE P.id = R.plane_id GROUP BY P.id ORDER BY NumOfRepairs DESC;");		
+			int rowCount = printRows(esql, "ListsTotalNumberOfRepairsPerPlane", Queries.REPAIRS_PER_PLANE);
 			System.out.println();
 		}
 		 catch (Exception e){
@@ -931,7 +1463,7 @@ System.out.println(String.format("%d", ArowCount));
 	//List total number of repairs per year in ascending order: Return the years with the number of
         //repairs made in those years in ascending order of number of repairs per year.		
 		try{
-			int rowCount = esql.executeQueryAndPrintResult("SELECT DISTINCT repair_date, COUNT(rid) AS NumRepairsPerYear FROM Repairs GROUP BY repair_date ORDER BY COUNT(rid) ASC;");
+			int rowCount = printRows(esql, "ListTotalNumberOfRepairsPerYear", Queries.REPAIRS_PER_YEAR);
                         if ( rowCount == 0){
                 	        System.out.println(" No records ");     
               	        }        
@@ -958,7 +1490,7 @@ System.out.println(String.format("%d", ArowCount));
 			// Reads flight number
 			flightNumber = readIntegerHelper("Flight number");
 			// Check if flight number actually exists
-			rowCount = executeSelectQuery(String.format("SELECT * FROM FLIGHT F WHERE F.fnum = %d;", flightNumber), esql);
+			rowCount = executeSelectQuery(Queries.FLIGHT_BY_ID, esql, flightNumber);
 			// If it does not then keep looping otherwise break
 			if (rowCount == 0){
 				System.out.println("****************************************************************");
@@ -991,8 +1523,14 @@ System.out.println(String.format("%d", ArowCount));
 				System.out.println("***************************************************\n");
 			}			
 		} 
-		String query = String.format("SELECT COUNT(*) as NumberOfPassengers FROM Customer C, Reservation R WHERE R.cid = C.id and R.status = '%s' and R.fid = %d;", passengerStatus, flightNumber);
-		String numbeOfPassengers = executeSelectQueryGetResults(query, esql).get(0).get(0);
+		int numbeOfPassengers;
+		try {
+			numbeOfPassengers = Operations.passengersWithStatus(esql, flightNumber, passengerStatus);
+		}
+		catch (Exception e){
+			printFailure(e);
+			return;
+		}
 		System.out.print("\nNumber of passengers ");
 		if (passengerStatus.equals("W")) System.out.print("waitlisted: ");
 		else if (passengerStatus.equals("C")) System.out.print("confirmed: ");
@@ -1000,6 +1538,77 @@ System.out.println(String.format("%d", ArowCount));
 		System.out.println(numbeOfPassengers + "\n");
 	}
 
+//=========================================================================================================================================================================
+
+	public static void ImportSchedule(DBproject esql) {//10
+		// Add every flight of a schedule file and list the lines that were rejected
+		startingMessage();
+		String fileName = readStringHelper("Schedule file (fnum,cost,num_stops,departure_date,arrival_date,departure_airport,arrival_airport,plane_id,pilot_id)");
+		try {
+			ScheduleImport.Result result = new ScheduleImport(esql, Integer.getInteger("dbproject.import.batchSize", 1000)).run(new FileReader(fileName.trim()));
+			for (String reject : result.getRejects()){
+				System.out.println(reject);
+			}
+			printSuccess(String.format("Imported %d flights, rejected %d lines", result.getImported(), result.getRejects().size()));
+		}
+		catch (IOException e){
+			printFailure(new IllegalArgumentException("Unable to read " + fileName + ": " + e.getMessage()));
+		}
+		catch (Exception e){
+			printFailure(e);
+		}
+	}
+
+//=========================================================================================================================================================================
+
+	public static void SearchConnections(DBproject esql) {//11
+		// List the best itineraries of up to three connecting flights with an open seat between two airports
+		startingMessage();
+		String from = readStringHelper("Departure airport");
+		String to = readStringHelper("Arrival airport");
+		String firstDate = readStringHelper("Earliest departure date (yyyy-mm-dd)");
+		String lastDate = readStringHelper("Latest departure date (yyyy-mm-dd)");
+		int maxLegs = readIntegerHelper("Most flights per itinerary (1-3)");
+		String rank = readStringHelper("Order by cost or arrival");
+		try {
+			List<RouteGraph.Itinerary> itineraries = Operations.searchConnections(esql, from, to, firstDate, lastDate, maxLegs, 1, rank, 10);
+			System.out.println();
+			if (itineraries.isEmpty()){
+				System.out.println(" No records ");
+			}
+			for (RouteGraph.Itinerary itinerary : itineraries){
+				System.out.println(itinerary);
+			}
+			System.out.println();
+		}
+		catch (Exception e){
+			printFailure(e);
+		}
+	}
+
+//=========================================================================================================================================================================
+
+	public static void ExportReports(DBproject esql) {//12
+		// Write every report and table to a file of its own in a directory
+		startingMessage();
+		String directory = readStringHelper("Directory");
+		String compress = readStringHelper("Compression (none or gzip)");
+		try {
+			ReportExport export = new ReportExport(esql,
+				ResultPrinter.Format.parse(System.getProperty("dbproject.export.format", "csv")),
+				ReportExport.Compression.parse(compress),
+				Integer.getInteger("dbproject.export.threads", 4));
+			List<ReportExport.Result> results = export.run(Paths.get(directory.trim()), new ArrayList<String>(ReportExport.REPORTS.keySet()));
+			for (ReportExport.Result result : results){
+				System.out.println(result);
+			}
+			printSuccess(String.format("Exported %d reports to %s", results.size(), directory.trim()));
+		}
+		catch (Exception e){
+			printFailure(e);
+		}
+	}
+
 /*************************************************************************  Helper Functions ********************************************************************* */
 	
 	public static void startingMessage(){
@@ -1048,10 +1657,10 @@ System.out.println(String.format("%d", ArowCount));
 
 	// Executes a Select Query and handles database exceptions
 	// Returns the row count
-	public static int executeSelectQuery (String query, DBproject esql){
+	public static int executeSelectQuery (String query, DBproject esql, Object... params){
 		int rowCount = 0;
 		try {
-			rowCount = esql.executeQuery(query);
+			rowCount = esql.executeQuery(query, params);
 		 }
 		 catch (Exception e){
 			System.out.println("***************************************");
@@ -1062,10 +1671,10 @@ System.out.println(String.format("%d", ArowCount));
 		 return rowCount;
 	}
 
-	public static void executeUpdateInsertQuery(String query, String sucessMessage, DBproject esql){
+	public static void executeUpdateInsertQuery(String query, String sucessMessage, DBproject esql, Object... params){
 		try {
 			System.out.println(); 
-			esql.executeUpdate(query);
+			esql.executeUpdate(query, params);
 			System.out.println(sucessMessage);
 			System.out.println(); 
 		}
@@ -1078,10 +1687,55 @@ System.out.println(String.format("%d", ArowCount));
 		}
 	}
 
-	public static List<List<String>> executeSelectQueryGetResults(String query, DBproject esql){
+	// Prints the result of a report query, from a replica when there is one, and times it as the given operation
+	public static int printRows(DBproject esql, String operation, String query) throws SQLException {
+		Metrics.Timer timer = esql.getMetrics().operation(operation);
+		int rowCount = timer.time(() -> esql.readOnly(null, () -> esql.executeQueryAndPrintResult(query)));
+		timer.addRows(rowCount);
+		return rowCount;
+	}
+
+	// Prints the message of an operation that completed
+	public static void printSuccess(String sucessMessage){
+		System.out.println(); 
+		System.out.println(sucessMessage);
+		System.out.println(); 
+	}
+
+	// Prints why an operation failed. Invalid input is explained, database exceptions are not
+	public static void printFailure(Exception e){
+		System.out.println(); 
+		System.out.println("***************************************");
+		if (e instanceof IllegalArgumentException){
+			System.out.println(e.getMessage());
+		}
+		else {
+			System.out.println("Something went wrong, please try again!");
+		}
+		System.out.println("***************************************\n");
+	}
+
+	// Books the flight and prints the success message if the reservation got the requested status,
+	// otherwise reports the status the reservation ended up with
+	public static void executeBooking(DBproject esql, int customerId, int flightNumber, String status, String sucessMessage){
+		try {
+			String result = Operations.bookFlight(esql, customerId, flightNumber, status);
+			if (result.equals(status)){
+				printSuccess(sucessMessage);
+			}
+			else {
+				printSuccess(String.format("Flight (%d) filled up in the meantime. Customer's status is %s", flightNumber, result));
+			}
+		}
+		catch (Exception e){
+			printFailure(e);
+		}
+	}
+
+	public static List<List<String>> executeSelectQueryGetResults(String query, DBproject esql, Object... params){
 		List<List<String>> records = new ArrayList<List<String>>();
 		try {
-			records = esql.executeQueryAndReturnResult(query);
+			records = esql.executeQueryAndReturnResult(query, params);
 		 }
 		 catch (Exception e){
 			System.out.println("***************************************");
@@ -1240,27 +1894,17 @@ System.out.println(String.format("%d", ArowCount));
 		return procceed;
 	}
 
+	// Returns true if the flight is full, or if that could not be determined
 	public static boolean isFlightFull(int flightNumber, DBproject esql){
-		String query = "";
-		String numOfTicketsSold = "";
-		String numOfSeatsInPlane = "";
-
-		// Get the number of tickets sold
-		query = String.format("Select F.num_sold FROM Flight F WHERE F.fnum = %d;", flightNumber);
-		numOfTicketsSold = executeSelectQueryGetResults(query, esql).get(0).get(0);
-
-		// Get the number of seats in the plane
-		query = String.format("SELECT P.seats FROM Plane P WHERE P.Id = (SELECT FI.plane_id FROM FlightInfo FI WHERE FI.flight_id = %d);", flightNumber);
-		numOfSeatsInPlane = executeSelectQueryGetResults(query, esql).get(0).get(0);
-
-		return Integer.parseInt(numOfSeatsInPlane) <= Integer.parseInt(numOfTicketsSold);
-	}
-
-	public static int generateValidId(){
-		// create instance of Random class 
-        Random rand = new Random(); 
-        // Generate random integers in range 10000 to 100000
-        return rand.nextInt(90000) + 10000;
+		try {
+			return Operations.isFlightFull(esql, flightNumber);
+		}
+		catch (Exception e){
+			System.out.println("***************************************");
+			System.out.println("Something went wrong, please try again!");
+			System.out.println("***************************************\n");
+			return true;
+		}
 	}
 
 	public static boolean askForConfirmationOrReservation(){
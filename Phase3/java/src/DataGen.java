@@ -0,0 +1,321 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * This class writes the nine CSVs of Phase3/data at any scale, in the same
+ * formats, for loading with create.sql or BulkLoader.
+ *
+ *   java DataGen <output dir> <scale> [threads]
+ *
+ * Scale 1 gives the row counts of the shipped files (250 customers, 67
+ * planes, 2,000 flights, 9,999 reservations, ...).  Every value of a row is a
+ * function of the seed (-Ddbproject.gen.seed, default 166), the table and the
+ * row number only, so the output is the same for any number of threads and
+ * every foreign key points at a row of the referenced file: a flight's plane
+ * and times are derived the same way in flights.csv, flightinfo.csv and
+ * schedule.csv.  The data is skewed: a few routes carry most flights, a few
+ * flights most reservations, old planes get more repairs and repairs peak in
+ * winter.
+ *
+ */
+
+public class DataGen{
+	// rows generated per task
+	static final int BLOCK_ROWS = 1 << 16;
+	// spreads the hot rows of a skewed pick over the whole table
+	static final long SPREAD = 1000003L;
+
+	static final String[] FIRST = {"Armand", "Alberto", "Wyatt", "Maria", "Ana", "Chen", "Priya", "Olga", "Kwame", "Sofia",
+		"Liam", "Noah", "Emma", "Yuki", "Omar", "Lucia", "Ivan", "Fatima", "Diego", "Hana"};
+	static final String[] LAST = {"Enderle", "Scarlett", "Ruoff", "Garcia", "Nguyen", "Smith", "Kowalski", "Okafor", "Silva", "Tanaka",
+		"Muller", "Rossi", "Haddad", "Novak", "Johansson", "Patel", "Kim", "Dubois", "Moreno", "Ivanova"};
+	static final String[] STREETS = {"Chapel Drive", "Bald Hill Street", "Campfire Ave.", "Oak Lane", "Main Street", "Pine Road",
+		"Lake View Drive", "Sunset Blvd.", "Maple Court", "River Road"};
+	static final String[] CITIES = {"Melbourne", "Baton Rouge", "Cockeysville", "Riverside", "Austin", "Denver", "Portland",
+		"Tucson", "Albany", "Boise"};
+	static final String[] STATES = {"FL", "LA", "MD", "CA", "TX", "CO", "OR", "AZ", "NY", "ID"};
+	static final String[] NATIONALITIES = {"Australia", "Morocco", "India", "Brazil", "Canada", "China", "France", "Germany",
+		"Japan", "Mexico", "Nigeria", "Spain", "United States"};
+	static final String[][] MODELS = {{"Airbus", "AirbusA300"}, {"Airbus", "AirbusA310"}, {"Airbus", "AirbusA320"},
+		{"Boeing", "Boeing737"}, {"Boeing", "Boeing747"}, {"Boeing", "Boeing777"}, {"Bombadier", "CRJ200"},
+		{"Embraer", "E190"}};
+	static final String[] REPAIR_CODES = {"MJ", "MN", "SV"};
+	// relative number of repairs per month, January first
+	static final int[] REPAIR_MONTHS = {16, 14, 10, 7, 6, 5, 5, 6, 7, 9, 12, 15};
+	static final String[] STATUSES = {"C", "C", "R", "W"};
+
+	// row counts at scale 1
+	final long customers, pilots, planes, technicians, flights, reservations, repairs, airports, routes;
+	final long seed;
+
+	DataGen(double scale, long seed){
+		this.customers = scaled(250, scale);
+		this.pilots = scaled(250, scale);
+		this.planes = scaled(67, scale);
+		this.technicians = scaled(250, scale);
+		this.flights = scaled(2000, scale);
+		this.reservations = scaled(9999, scale);
+		this.repairs = scaled(549, scale);
+		// airports grow slower than flights, routes are airport pairs
+		this.airports = Math.max(10, (long) (50 * Math.sqrt(scale)));
+		this.routes = Math.max(10, (long) (200 * Math.sqrt(scale)));
+		this.seed = seed;
+	}
+
+	/**
+	 * Appends one row of a table to the buffer.
+	 */
+	interface RowWriter{
+		void write(StringBuilder sb, long row);
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2){
+			System.err.println("Usage: java [-classpath <classpath>] " + DataGen.class.getName() + " <output dir> <scale> [threads]");
+			return;
+		}
+		Path dir = Paths.get(args[0]);
+		Files.createDirectories(dir);
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		DataGen gen = new DataGen(Double.parseDouble(args[1]), Long.getLong("dbproject.gen.seed", 166L));
+
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		try{
+			gen.write(workers, threads, dir.resolve("customer.csv"), gen.customers, gen::customer);
+			gen.write(workers, threads, dir.resolve("pilots.csv"), gen.pilots, gen::pilot);
+			gen.write(workers, threads, dir.resolve("planes.csv"), gen.planes, gen::plane);
+			gen.write(workers, threads, dir.resolve("technician.csv"), gen.technicians, gen::technician);
+			gen.write(workers, threads, dir.resolve("flights.csv"), gen.flights, gen::flight);
+			gen.write(workers, threads, dir.resolve("reservation.csv"), gen.reservations, gen::reservation);
+			gen.write(workers, threads, dir.resolve("flightinfo.csv"), gen.flights, gen::flightInfo);
+			gen.write(workers, threads, dir.resolve("repairs.csv"), gen.repairs, gen::repair);
+			gen.write(workers, threads, dir.resolve("schedule.csv"), gen.flights, gen::schedule);
+		}finally{
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Writes a table in blocks generated in parallel and written in order.
+	 */
+	void write(ExecutorService workers, int threads, Path file, long rows, RowWriter rowWriter) throws Exception {
+		long start = System.nanoTime();
+		ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+		OutputStream out = new FileOutputStream(file.toFile());
+		try{
+			long next = 0;
+			while (next < rows || !pending.isEmpty()){
+				// keep every thread busy but bound the blocks held in memory
+				while (next < rows && pending.size() < 2 * threads){
+					long first = next;
+					long last = Math.min(rows, next + BLOCK_ROWS);
+					pending.add(workers.submit(() -> {
+						StringBuilder sb = new StringBuilder(BLOCK_ROWS * 48);
+						for (long row = first; row < last; row++){
+							rowWriter.write(sb, row);
+							sb.append('\n');
+						}
+						return sb.toString().getBytes(StandardCharsets.UTF_8);
+					}));
+					next = last;
+				}
+				out.write(pending.poll().get());
+			}//end while
+		}finally{
+			out.close();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%-16s %,14d rows in %7.2f s  %,12.0f rows/s",
+			file.getFileName(), rows, seconds, rows / Math.max(seconds, 1e-9)));
+	}
+
+	//================================= Rows =================================
+
+	void customer(StringBuilder sb, long id){
+		SplittableRandom r = random(1, id);
+		sb.append(id).append(',').append(pick(r, FIRST)).append(',').append(pick(r, LAST))
+			.append(',').append(r.nextBoolean() ? 'M' : 'F')
+			.append(',').append(1 + r.nextInt(12)).append('/').append(1 + r.nextInt(28)).append('/').append(1940 + r.nextInt(62))
+			.append(',').append(1 + r.nextInt(9999)).append(' ').append(pick(r, STREETS)).append(' ').append(pick(r, CITIES))
+			.append(',').append(1000000000L + r.nextLong(9000000000L))
+			.append(", ").append(pick(r, STATES)).append(' ').append(10000 + r.nextInt(90000));
+	}
+
+	void pilot(StringBuilder sb, long id){
+		SplittableRandom r = random(2, id);
+		sb.append(id).append(',').append(pick(r, FIRST)).append(' ').append(pick(r, LAST)).append(',').append(pick(r, NATIONALITIES));
+	}
+
+	void plane(StringBuilder sb, long id){
+		SplittableRandom r = random(3, id);
+		String[] model = MODELS[r.nextInt(MODELS.length)];
+		sb.append(id).append(',').append(model[0]).append(',').append(model[1]).append(',').append(planeAge(id)).append(',').append(seats(id));
+	}
+
+	void technician(StringBuilder sb, long id){
+		SplittableRandom r = random(4, id);
+		sb.append(id).append(',').append(pick(r, FIRST)).append(' ').append(pick(r, LAST));
+	}
+
+	void flight(StringBuilder sb, long fnum){
+		SplittableRandom r = random(5, fnum);
+		long route = skewed(r, this.routes, 3.0);
+		long from = spread(route, this.airports);
+		long to = (from + 1 + route % (this.airports - 1)) % this.airports;
+		long departure = departureMinute(fnum);
+		sb.append(fnum).append(',').append(50 + r.nextInt(950))
+			.append(',').append(r.nextInt(seats(planeOf(fnum)) + 1))
+			.append(',').append(skewed(r, 4, 2.0))
+			.append(',');
+		timestamp(sb, departure);
+		sb.append(',');
+		timestamp(sb, departure + durationMinutes(fnum));
+		sb.append(',').append(airport(to)).append(',').append(airport(from));
+	}
+
+	void reservation(StringBuilder sb, long rnum){
+		SplittableRandom r = random(6, rnum);
+		sb.append(rnum).append(',').append(r.nextLong(this.customers))
+			.append(',').append(spread(skewed(r, this.flights, 2.0), this.flights))
+			.append(',').append(pick(r, STATUSES));
+	}
+
+	void flightInfo(StringBuilder sb, long fiid){
+		SplittableRandom r = random(7, fiid);
+		sb.append(fiid).append(',').append(fiid).append(',').append(r.nextLong(this.pilots)).append(',').append(planeOf(fiid));
+	}
+
+	void repair(StringBuilder sb, long rid){
+		SplittableRandom r = random(8, rid);
+		// old planes break more often
+		long plane = r.nextLong(this.planes);
+		if (planeAge(plane) < 10 && r.nextBoolean()){
+			plane = r.nextLong(this.planes);
+		}
+		int month = pickWeighted(r, REPAIR_MONTHS);
+		sb.append(rid).append(',').append(2010 + r.nextInt(6)).append('-');
+		pad(sb, month + 1).append('-');
+		pad(sb, 1 + r.nextInt(28));
+		sb.append(',').append(pick(r, REPAIR_CODES)).append(',').append(r.nextLong(this.pilots))
+			.append(',').append(plane).append(',').append(r.nextLong(this.technicians));
+	}
+
+	void schedule(StringBuilder sb, long id){
+		long departure = departureMinute(id);
+		sb.append(id).append(',').append(id).append(',');
+		timestamp(sb, departure);
+		sb.append(',');
+		timestamp(sb, departure + durationMinutes(id));
+	}
+
+	//=============================== Derived ================================
+
+	long planeOf(long fnum){
+		return spread(skewed(random(9, fnum), this.planes, 1.5), this.planes);
+	}
+
+	int seats(long plane){
+		return 50 + random(10, plane).nextInt(400);
+	}
+
+	int planeAge(long plane){
+		return random(11, plane).nextInt(30);
+	}
+
+	// minutes since 2014-01-01 00:00, within two years
+	long departureMinute(long fnum){
+		return random(12, fnum).nextLong(2L * 365 * 24 * 60);
+	}
+
+	long durationMinutes(long fnum){
+		return 45 + random(13, fnum).nextInt(15 * 60);
+	}
+
+	//================================ Helpers ===============================
+
+	// independent, reproducible values for every (table, row)
+	SplittableRandom random(int table, long row){
+		return new SplittableRandom(this.seed * 0x9E3779B97F4A7C15L + table * 0xC2B2AE3D27D4EB4FL + row);
+	}
+
+	// a value in [0, n) skewed towards 0, more for larger exponents
+	static long skewed(SplittableRandom r, long n, double exponent){
+		return Math.min(n - 1, (long) (n * Math.pow(r.nextDouble(), exponent)));
+	}
+
+	// moves small indexes apart so the hot rows are not all adjacent
+	static long spread(long index, long n){
+		return n % SPREAD == 0 ? index : (index * SPREAD) % n;
+	}
+
+	static String pick(SplittableRandom r, String[] values){
+		return values[r.nextInt(values.length)];
+	}
+
+	static int pickWeighted(SplittableRandom r, int[] weights){
+		int total = 0;
+		for (int w : weights){
+			total += w;
+		}
+		int x = r.nextInt(total);
+		for (int i = 0; i < weights.length; i++){
+			x -= weights[i];
+			if (x < 0){
+				return i;
+			}
+		}
+		return weights.length - 1;
+	}
+
+	static String airport(long index){
+		char[] code = new char[5];
+		for (int i = 4; i >= 0; i--){
+			code[i] = (char) ('A' + index % 26);
+			index /= 26;
+		}
+		return new String(code);
+	}
+
+	static void timestamp(StringBuilder sb, long minutes){
+		LocalDateTime t = LocalDateTime.of(2014, 1, 1, 0, 0).plusMinutes(minutes);
+		sb.append(t.getYear()).append('-');
+		pad(sb, t.getMonthValue()).append('-');
+		pad(sb, t.getDayOfMonth()).append(' ');
+		pad(sb, t.getHour()).append(':');
+		pad(sb, t.getMinute());
+	}
+
+	static StringBuilder pad(StringBuilder sb, int value){
+		if (value < 10){
+			sb.append('0');
+		}
+		return sb.append(value);
+	}
+
+	static long scaled(long base, double scale){
+		return Math.max(1, Math.round(base * scale));
+	}
+}
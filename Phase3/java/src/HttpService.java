@@ -0,0 +1,162 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This class serves the nine menu operations as a local HTTP/JSON API.  An
+ * operation is called by its menu name, e.g.
+ *
+ *   POST /BookFlight   {"cid": 94, "fnum": 769, "status": "C"}
+ *
+ * Arguments may also be given as query parameters.  Every request runs on its
+ * own virtual thread when the JVM has them (a cached thread pool otherwise),
+ * and at most as many requests as there are pooled connections run at once;
+ * the rest wait briefly and are refused with 503.  GET /metrics returns the
+ * measurements of every operation in the Prometheus text format.
+ *
+ */
+
+public class HttpService{
+	private final DBproject _esql;
+	private final HttpServer _server;
+	private final ExecutorService _executor;
+	private final Semaphore _permits;
+	private final long _queueTimeoutMillis;
+
+	public HttpService(DBproject esql, int port, int maxConcurrency, long queueTimeoutMillis) throws IOException {
+		this._esql = esql;
+		this._permits = new Semaphore(maxConcurrency, true);
+		this._queueTimeoutMillis = queueTimeoutMillis;
+		this._executor = newRequestExecutor("http-worker");
+		// bound to the loopback interface only, this is not meant to be exposed
+		this._server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+		this._server.setExecutor(this._executor);
+		this._server.createContext("/", this::handle);
+		this._server.createContext("/metrics", esql.getMetrics()::handle);
+	}
+
+	public void start(){
+		this._server.start();
+	}
+
+	public void stop(){
+		this._server.stop(1);
+		this._executor.shutdown();
+	}
+
+	public int getPort(){
+		return this._server.getAddress().getPort();
+	}
+
+	/**
+	 * Uses a virtual thread per request when the running JVM supports them
+	 * (Java 21 and later), and a cached platform thread pool otherwise.
+	 *
+	 * @param name the name of the platform threads
+	 */
+	static ExecutorService newRequestExecutor(String name){
+		try{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}catch (ReflectiveOperationException e){
+			return Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, name);
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		Map<String, Object> response = new LinkedHashMap<String, Object>();
+		int code = 200;
+		boolean acquired = false;
+		try{
+			String operation = exchange.getRequestURI().getPath().substring(1);
+			Map<String, String> args = parseQuery(exchange.getRequestURI().getRawQuery());
+			if (exchange.getRequestMethod().equals("POST")){
+				args.putAll(Json.parseObject(readBody(exchange.getRequestBody())));
+			}
+			acquired = this._permits.tryAcquire(this._queueTimeoutMillis, TimeUnit.MILLISECONDS);
+			if (!acquired){
+				code = 503;
+				response.put("error", "too many concurrent requests");
+			}
+			else {
+				response.putAll(Operations.dispatch(this._esql, operation, args));
+			}
+		}catch (IllegalArgumentException e){
+			code = e.getMessage() != null && e.getMessage().startsWith("unknown operation") ? 404 : 400;
+			response.put("error", e.getMessage());
+		}catch (SQLException e){
+			// unique violations mean the id is already taken
+			code = "23505".equals(e.getSQLState()) ? 409 : 500;
+			response.put("error", e.getMessage());
+			response.put("sqlstate", e.getSQLState());
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			code = 503;
+			response.put("error", "interrupted");
+		}finally{
+			if (acquired){
+				this._permits.release();
+			}
+		}
+		byte[] body = Json.write(response).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(code, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	private static String readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		byte[] chunk = new byte[4096];
+		int n;
+		while ((n = in.read(chunk)) > 0){
+			buffer.write(chunk, 0, n);
+		}
+		return buffer.toString(StandardCharsets.UTF_8.name());
+	}
+
+	private static Map<String, String> parseQuery(String query){
+		Map<String, String> args = new LinkedHashMap<String, String>();
+		if (query == null || query.isEmpty()){
+			return args;
+		}
+		for (String pair : query.split("&")){
+			int eq = pair.indexOf('=');
+			String name = eq < 0 ? pair : pair.substring(0, eq);
+			String value = eq < 0 ? "" : pair.substring(eq + 1);
+			args.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return args;
+	}
+}
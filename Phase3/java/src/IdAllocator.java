@@ -0,0 +1,60 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+
+
+/**
+ * This class hands out unique primary keys for one table using the hi-lo
+ * scheme.  Each call to nextval on the table's sequence reserves a block of
+ * BLOCK_SIZE ids (hi * BLOCK_SIZE up to hi * BLOCK_SIZE + BLOCK_SIZE - 1) for
+ * this client, so only one insert in BLOCK_SIZE costs a round trip and any
+ * number of clients can allocate ids without colliding.  Ids left over from a
+ * block when the program exits are simply never used.
+ *
+ * The sequences are created in create.sql; every client must use the same
+ * BLOCK_SIZE.
+ *
+ */
+
+public class IdAllocator{
+	public static final int BLOCK_SIZE = 100;
+
+	private final DBproject _esql;
+	private final String _sequence;
+	//next id to hand out and the end of the reserved block (exclusive)
+	private long _next = 0;
+	private long _limit = 0;
+	private final TypedResult _block = new TypedResult();
+
+	public IdAllocator(DBproject esql, String sequence){
+		this._esql = esql;
+		this._sequence = sequence;
+	}
+
+	/**
+	 * Returns an id no other client has been or will be given.
+	 *
+	 * @throws java.sql.SQLException when a new block could not be reserved
+	 */
+	public synchronized int nextId() throws SQLException {
+		if (this._next == this._limit){
+			long hi = this._esql.executeQueryAndReturnTyped(this._block, Queries.NEXT_ID_BLOCK, this._sequence).getLong(0, 0);
+			this._next = hi * BLOCK_SIZE;
+			this._limit = this._next + BLOCK_SIZE;
+			if (this._limit - 1 > Integer.MAX_VALUE){
+				throw new SQLException("Sequence " + this._sequence + " ran out of integer ids", "2200H");
+			}
+		}
+		return (int) this._next++;
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * This class reads and writes the small JSON documents used by the service
+ * modes.  Requests are flat objects whose values are strings, numbers,
+ * booleans or null; responses are built from maps, lists, strings, numbers
+ * and booleans.
+ *
+ */
+
+public final class Json{
+
+	private Json(){
+	}
+
+	/**
+	 * Parses a flat JSON object.  Every value is returned as its text, null
+	 * values as null.
+	 *
+	 * @param text the JSON document
+	 * @return the members of the object in document order
+	 * @throws IllegalArgumentException when the text is not a flat JSON object
+	 */
+	public static Map<String, String> parseObject(String text){
+		Map<String, String> members = new LinkedHashMap<String, String>();
+		int[] pos = {skipSpace(text, 0)};
+		if (pos[0] == text.length()){
+			return members;
+		}
+		expect(text, pos, '{');
+		pos[0] = skipSpace(text, pos[0]);
+		if (peek(text, pos) == '}'){
+			pos[0]++;
+			return members;
+		}
+		while (true){
+			pos[0] = skipSpace(text, pos[0]);
+			String name = readString(text, pos);
+			pos[0] = skipSpace(text, pos[0]);
+			expect(text, pos, ':');
+			pos[0] = skipSpace(text, pos[0]);
+			members.put(name, readValue(text, pos));
+			pos[0] = skipSpace(text, pos[0]);
+			char c = peek(text, pos);
+			pos[0]++;
+			if (c == '}'){
+				break;
+			}
+			if (c != ','){
+				throw new IllegalArgumentException("expected ',' or '}' at offset " + (pos[0] - 1));
+			}
+		}
+		if (skipSpace(text, pos[0]) != text.length()){
+			throw new IllegalArgumentException("unexpected text after the object");
+		}
+		return members;
+	}
+
+	/**
+	 * Writes a value built from maps, lists, strings, numbers, booleans and null.
+	 */
+	public static String write(Object value){
+		StringBuilder sb = new StringBuilder();
+		write(sb, value);
+		return sb.toString();
+	}
+
+	private static void write(StringBuilder sb, Object value){
+		if (value == null){
+			sb.append("null");
+		}
+		else if (value instanceof Number || value instanceof Boolean){
+			sb.append(value);
+		}
+		else if (value instanceof Map){
+			sb.append('{');
+			Iterator<? extends Map.Entry<?, ?>> it = ((Map<?, ?>) value).entrySet().iterator();
+			while (it.hasNext()){
+				Map.Entry<?, ?> e = it.next();
+				writeString(sb, String.valueOf(e.getKey()));
+				sb.append(':');
+				write(sb, e.getValue());
+				if (it.hasNext()){
+					sb.append(',');
+				}
+			}
+			sb.append('}');
+		}
+		else if (value instanceof List){
+			sb.append('[');
+			List<?> list = (List<?>) value;
+			for (int i = 0; i < list.size(); i++){
+				if (i > 0){
+					sb.append(',');
+				}
+				write(sb, list.get(i));
+			}
+			sb.append(']');
+		}
+		else {
+			writeString(sb, value.toString());
+		}
+	}
+
+	private static void writeString(StringBuilder sb, String s){
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++){
+			char c = s.charAt(i);
+			switch (c){
+				case '"': sb.append("\\\""); break;
+				case '\\': sb.append("\\\\"); break;
+				case '\n': sb.append("\\n"); break;
+				case '\r': sb.append("\\r"); break;
+				case '\t': sb.append("\\t"); break;
+				default:
+					if (c < 0x20){
+						sb.append(String.format("\\u%04x", (int) c));
+					}
+					else {
+						sb.append(c);
+					}
+			}
+		}
+		sb.append('"');
+	}
+
+	private static String readValue(String text, int[] pos){
+		char c = peek(text, pos);
+		if (c == '"'){
+			return readString(text, pos);
+		}
+		int start = pos[0];
+		while (pos[0] < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos[0])) < 0){
+			pos[0]++;
+		}
+		String literal = text.substring(start, pos[0]);
+		if (literal.equals("null")){
+			return null;
+		}
+		if (literal.equals("true") || literal.equals("false") || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")){
+			return literal;
+		}
+		throw new IllegalArgumentException("unsupported value at offset " + start);
+	}
+
+	private static String readString(String text, int[] pos){
+		expect(text, pos, '"');
+		StringBuilder sb = new StringBuilder();
+		while (true){
+			char c = peek(text, pos);
+			pos[0]++;
+			if (c == '"'){
+				return sb.toString();
+			}
+			if (c != '\\'){
+				sb.append(c);
+				continue;
+			}
+			char e = peek(text, pos);
+			pos[0]++;
+			switch (e){
+				case 'n': sb.append('\n'); break;
+				case 'r': sb.append('\r'); break;
+				case 't': sb.append('\t'); break;
+				case 'b': sb.append('\b'); break;
+				case 'f': sb.append('\f'); break;
+				case 'u':
+					if (pos[0] + 4 > text.length()){
+						throw new IllegalArgumentException("truncated escape at offset " + pos[0]);
+					}
+					sb.append((char) Integer.parseInt(text.substring(pos[0], pos[0] + 4), 16));
+					pos[0] += 4;
+					break;
+				default: sb.append(e);
+			}
+		}
+	}
+
+	private static void expect(String text, int[] pos, char c){
+		if (peek(text, pos) != c){
+			throw new IllegalArgumentException("expected '" + c + "' at offset " + pos[0]);
+		}
+		pos[0]++;
+	}
+
+	private static char peek(String text, int[] pos){
+		if (pos[0] >= text.length()){
+			throw new IllegalArgumentException("unexpected end of document");
+		}
+		return text.charAt(pos[0]);
+	}
+
+	private static int skipSpace(String text, int pos){
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))){
+			pos++;
+		}
+		return pos;
+	}
+}
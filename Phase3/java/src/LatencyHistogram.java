@@ -0,0 +1,130 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * This class counts latencies in nanoseconds in log-linear buckets: values
+ * below 128 exactly, larger values with 64 buckets per power of two, so any
+ * percentile is reported within 1.6% of the true value with a fixed 29 KB of
+ * counters.  Recording is thread safe and lock free.
+ *
+ */
+
+public class LatencyHistogram{
+	private static final int SUB_BUCKETS = 64;
+	//values up to 2^63 - 1
+	private static final int BUCKETS = 2 * SUB_BUCKETS + 56 * SUB_BUCKETS;
+
+	private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong _count = new AtomicLong();
+	private final AtomicLong _sum = new AtomicLong();
+	private final AtomicLong _max = new AtomicLong();
+
+	public void record(long nanos){
+		long value = Math.max(0, nanos);
+		this._counts.incrementAndGet(index(value));
+		this._count.incrementAndGet();
+		this._sum.addAndGet(value);
+		this._max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * Adds the counts of another histogram to this one.
+	 */
+	public void add(LatencyHistogram other){
+		for (int i = 0; i < BUCKETS; i++){
+			long n = other._counts.get(i);
+			if (n != 0){
+				this._counts.addAndGet(i, n);
+			}
+		}
+		this._count.addAndGet(other._count.get());
+		this._sum.addAndGet(other._sum.get());
+		this._max.accumulateAndGet(other._max.get(), Math::max);
+	}
+
+	public void reset(){
+		for (int i = 0; i < BUCKETS; i++){
+			this._counts.set(i, 0);
+		}
+		this._count.set(0);
+		this._sum.set(0);
+		this._max.set(0);
+	}
+
+	public long getCount(){
+		return this._count.get();
+	}
+
+	public long getSum(){
+		return this._sum.get();
+	}
+
+	public long getMax(){
+		return this._max.get();
+	}
+
+	public double getMean(){
+		long count = this._count.get();
+		return count == 0 ? 0 : (double) this._sum.get() / count;
+	}
+
+	/**
+	 * Returns the value below which the given fraction of the recorded values
+	 * fall, e.g. 0.99 for the 99th percentile.
+	 */
+	public long percentile(double fraction){
+		long count = this._count.get();
+		if (count == 0){
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(fraction * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++){
+			seen += this._counts.get(i);
+			if (seen >= target){
+				return Math.min(upperBound(i), this._max.get());
+			}
+		}
+		return this._max.get();
+	}
+
+	/**
+	 * Returns count, mean and percentiles in microseconds on one line.
+	 */
+	public String summary(){
+		return String.format("n=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+			getCount(), getMean() / 1e3, percentile(0.50) / 1e3, percentile(0.99) / 1e3,
+			percentile(0.999) / 1e3, getMax() / 1e3);
+	}
+
+	static int index(long value){
+		if (value < 2 * SUB_BUCKETS){
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - 6;
+		long top = value >>> shift;
+		return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (top - SUB_BUCKETS);
+	}
+
+	static long upperBound(int index){
+		if (index < 2 * SUB_BUCKETS){
+			return index;
+		}
+		int shift = (index - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+		long top = (index - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((top + 1) << shift) - 1;
+	}
+}
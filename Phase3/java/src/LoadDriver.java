@@ -0,0 +1,318 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class drives the BookFlight, ListNumberOfAvailableSeats and
+ * FindPassengersCountWithStatus operations from N closed-loop clients: each
+ * client sends its next request as soon as the previous one returns (after
+ * an optional think time).  Flights are picked with Zipfian popularity and
+ * customers uniformly.  It reports throughput, latency percentiles and how
+ * many requests were rejected, conflicted or failed.  Given a list of client
+ * counts it runs one step per count, which shows where throughput stops
+ * growing and latency takes off.  Bookings write reservations, so run it
+ * against a scratch database.
+ *
+ *   java LoadDriver <dbname> <port> <user> [clients, e.g. 1,4,16,64] [seconds per step]
+ *
+ * Settings: dbproject.driver.mix (book=20,seats=60,passengers=20),
+ * dbproject.driver.zipf (exponent, 0.99), dbproject.driver.thinkMillis (mean
+ * think time, 0), dbproject.driver.seed (166) and
+ * dbproject.driver.reportSeconds (5).
+ *
+ */
+
+public class LoadDriver{
+
+	enum Kind{
+		BOOK("BookFlight"), SEATS("ListNumberOfAvailableSeats"), PASSENGERS("FindPassengersCountWithStatus");
+
+		final String operation;
+
+		Kind(String operation){
+			this.operation = operation;
+		}
+	}
+
+	/**
+	 * The outcomes of the requests of one kind.
+	 */
+	static final class Stats{
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final AtomicLong rejected = new AtomicLong();
+		final AtomicLong conflicts = new AtomicLong();
+		final AtomicLong errors = new AtomicLong();
+		// bookings that were waitlisted because the flight was full
+		final AtomicLong waitlisted = new AtomicLong();
+	}
+
+	/**
+	 * Picks ranks 0..n-1 with probability proportional to 1 / (rank + 1)^s.
+	 */
+	static final class Zipf{
+		private final double[] _cdf;
+
+		Zipf(int n, double s){
+			this._cdf = new double[n];
+			double sum = 0;
+			for (int i = 0; i < n; i++){
+				sum += 1 / Math.pow(i + 1, s);
+				this._cdf[i] = sum;
+			}
+			for (int i = 0; i < n; i++){
+				this._cdf[i] /= sum;
+			}
+		}
+
+		int next(SplittableRandom r){
+			int i = Arrays.binarySearch(this._cdf, r.nextDouble());
+			return Math.min(this._cdf.length - 1, i < 0 ? -i - 1 : i);
+		}
+	}
+
+	private final DBproject _esql;
+	private final int[] _flights;
+	private final String[] _departureDates;
+	private final int[] _customers;
+	private final Zipf _zipf;
+	private final int[] _weights = new int[Kind.values().length];
+	private final double _thinkMillis;
+
+	LoadDriver(DBproject esql, String mix, double zipf, double thinkMillis, long seed) throws SQLException {
+		this._esql = esql;
+		this._thinkMillis = thinkMillis;
+		parseMix(mix);
+
+		TypedResult flights = esql.executeQueryAndReturnTyped(new TypedResult(),
+			"SELECT F.fnum, F.actual_departure_date FROM Flight F, FlightInfo FI WHERE FI.flight_id = F.fnum ORDER BY F.fnum");
+		TypedResult customers = esql.executeQueryAndReturnTyped(new TypedResult(), Queries.CUSTOMER_IDS);
+		if (flights.isEmpty() || customers.isEmpty()){
+			throw new IllegalStateException("The database has no flights with a plane or no customers");
+		}
+		// popularity ranks are assigned to the flights in a seeded random order
+		int n = flights.size();
+		Integer[] order = new Integer[n];
+		SplittableRandom r = new SplittableRandom(seed);
+		for (int i = 0; i < n; i++){
+			order[i] = i;
+		}
+		for (int i = n - 1; i > 0; i--){
+			int j = r.nextInt(i + 1);
+			Integer t = order[i];
+			order[i] = order[j];
+			order[j] = t;
+		}
+		this._flights = new int[n];
+		this._departureDates = new String[n];
+		for (int i = 0; i < n; i++){
+			this._flights[i] = flights.getInt(order[i], "fnum");
+			this._departureDates[i] = flights.getString(order[i], "actual_departure_date");
+		}
+		this._customers = new int[customers.size()];
+		for (int i = 0; i < this._customers.length; i++){
+			this._customers[i] = customers.getInt(i, "id");
+		}
+		this._zipf = new Zipf(n, zipf);
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3){
+			System.err.println("Usage: java [-classpath <classpath>] " + LoadDriver.class.getName() +
+				" <dbname> <port> <user> [clients, e.g. 1,4,16,64] [seconds per step]");
+			return;
+		}
+		String[] steps = (args.length > 3 ? args[3] : "1,2,4,8,16,32").split(",");
+		int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 30;
+		int maxClients = 0;
+		for (String step : steps){
+			maxClients = Math.max(maxClients, Integer.parseInt(step.trim()));
+		}
+
+		if (System.getProperty("dbproject.pool.maxSize") == null){
+			System.setProperty("dbproject.pool.maxSize", Integer.toString(maxClients));
+		}
+		Class.forName("org.postgresql.Driver");
+		DBproject esql = new DBproject(args[0], args[1], args[2], "");
+		try{
+			long seed = Long.getLong("dbproject.driver.seed", 166L);
+			LoadDriver driver = new LoadDriver(esql,
+				System.getProperty("dbproject.driver.mix", "book=20,seats=60,passengers=20"),
+				Double.parseDouble(System.getProperty("dbproject.driver.zipf", "0.99")),
+				Double.parseDouble(System.getProperty("dbproject.driver.thinkMillis", "0")), seed);
+			int reportSeconds = Integer.getInteger("dbproject.driver.reportSeconds", 5);
+
+			StringBuilder capacity = new StringBuilder(String.format("%8s %12s %12s %12s%n", "clients", "ops/s", "p99 (ms)", "errors"));
+			for (String step : steps){
+				int clients = Integer.parseInt(step.trim());
+				System.out.println(String.format("%n=== %d client(s) for %d s ===", clients, seconds));
+				Stats[] stats = driver.run(clients, seconds * 1000000000L, reportSeconds, seed + clients);
+
+				LatencyHistogram all = new LatencyHistogram();
+				long failed = 0;
+				for (Kind kind : Kind.values()){
+					Stats s = stats[kind.ordinal()];
+					all.add(s.latencies);
+					failed += s.conflicts.get() + s.errors.get();
+					if (s.latencies.getCount() == 0){
+						continue;
+					}
+					System.out.println(String.format("%-30s %s", kind.operation, s.latencies.summary()));
+					System.out.println(String.format("%-30s p90=%.1fus rejected=%d conflicts=%d errors=%d%s", "",
+						s.latencies.percentile(0.90) / 1e3, s.rejected.get(), s.conflicts.get(), s.errors.get(),
+						kind == Kind.BOOK ? " waitlisted=" + s.waitlisted.get() : ""));
+				}
+				capacity.append(String.format("%8d %12.0f %12.2f %12d%n", clients, all.getCount() / (double) seconds,
+					all.percentile(0.99) / 1e6, failed));
+			}//end for
+			System.out.println();
+			System.out.print(capacity);
+		}finally{
+			esql.cleanup();
+		}
+	}
+
+	/**
+	 * Runs the clients for the given time and returns the outcomes by kind.
+	 */
+	Stats[] run(int clients, long nanos, int reportSeconds, long seed) throws InterruptedException {
+		Stats[] stats = new Stats[Kind.values().length];
+		for (int i = 0; i < stats.length; i++){
+			stats[i] = new Stats();
+		}
+		CountDownLatch start = new CountDownLatch(1);
+		SplittableRandom seeds = new SplittableRandom(seed);
+		Thread[] workers = new Thread[clients];
+		long deadline = System.nanoTime() + nanos;
+		for (int c = 0; c < clients; c++){
+			SplittableRandom r = seeds.split();
+			workers[c] = new Thread(() -> {
+				try{
+					start.await();
+				}catch (InterruptedException e){
+					return;
+				}
+				while (System.nanoTime() < deadline){
+					request(r, stats);
+					if (this._thinkMillis > 0){
+						try{
+							// exponentially distributed think time
+							Thread.sleep((long) (-this._thinkMillis * Math.log(1 - r.nextDouble())));
+						}catch (InterruptedException e){
+							return;
+						}
+					}
+				}//end while
+			}, "client-" + c);
+			workers[c].setDaemon(true);
+			workers[c].start();
+		}
+		start.countDown();
+
+		long begin = System.nanoTime();
+		long lastTime = begin;
+		long last = 0;
+		while (System.nanoTime() < deadline){
+			Thread.sleep(Math.min(reportSeconds * 1000L, Math.max(1, (deadline - System.nanoTime()) / 1000000)));
+			long now = System.nanoTime();
+			long count = 0;
+			for (Stats s : stats){
+				count += s.latencies.getCount();
+			}
+			System.out.println(String.format("  %5.0f s  %10.0f ops/s", (now - begin) / 1e9, (count - last) / ((now - lastTime) / 1e9)));
+			last = count;
+			lastTime = now;
+		}//end while
+		for (Thread worker : workers){
+			worker.join();
+		}
+		return stats;
+	}
+
+	private void request(SplittableRandom r, Stats[] all){
+		Kind kind = pickKind(r);
+		Stats stats = all[kind.ordinal()];
+		int flight = this._zipf.next(r);
+		int flightNumber = this._flights[flight];
+		long begin = System.nanoTime();
+		try{
+			switch (kind){
+				case BOOK:
+					int customerId = this._customers[r.nextInt(this._customers.length)];
+					String requested = r.nextBoolean() ? "C" : "R";
+					if (Operations.bookFlight(this._esql, customerId, flightNumber, requested).equals("W")){
+						stats.waitlisted.incrementAndGet();
+					}
+					break;
+				case SEATS:
+					Operations.availableSeats(this._esql, flightNumber, this._departureDates[flight]);
+					break;
+				default:
+					Operations.passengersWithStatus(this._esql, flightNumber, r.nextBoolean() ? "C" : "W");
+			}
+		}catch (IllegalArgumentException e){
+			stats.rejected.incrementAndGet();
+		}catch (SQLException e){
+			if (isConflict(e)){
+				stats.conflicts.incrementAndGet();
+			}
+			else {
+				stats.errors.incrementAndGet();
+			}
+		}
+		stats.latencies.record(System.nanoTime() - begin);
+	}
+
+	// serialization failures, deadlocks and duplicate keys
+	private static boolean isConflict(SQLException e){
+		String state = e.getSQLState();
+		return "40001".equals(state) || "40P01".equals(state) || "23505".equals(state);
+	}
+
+	private Kind pickKind(SplittableRandom r){
+		int total = 0;
+		for (int w : this._weights){
+			total += w;
+		}
+		int x = r.nextInt(total);
+		for (Kind kind : Kind.values()){
+			x -= this._weights[kind.ordinal()];
+			if (x < 0){
+				return kind;
+			}
+		}
+		return Kind.SEATS;
+	}
+
+	private void parseMix(String mix){
+		for (String part : mix.split(",")){
+			String[] kv = part.trim().split("=");
+			if (kv.length != 2){
+				throw new IllegalArgumentException("mix must look like book=20,seats=60,passengers=20");
+			}
+			switch (kv[0].trim()){
+				case "book": this._weights[Kind.BOOK.ordinal()] = Integer.parseInt(kv[1].trim()); break;
+				case "seats": this._weights[Kind.SEATS.ordinal()] = Integer.parseInt(kv[1].trim()); break;
+				case "passengers": this._weights[Kind.PASSENGERS.ordinal()] = Integer.parseInt(kv[1].trim()); break;
+				default: throw new IllegalArgumentException("unknown operation in mix: " + kv[0]);
+			}
+		}
+		if (Arrays.stream(this._weights).sum() <= 0){
+			throw new IllegalArgumentException("mix must have a positive weight");
+		}
+	}
+}
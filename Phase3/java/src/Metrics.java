@@ -0,0 +1,370 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+/**
+ * This class measures every operation and every execute method of DBproject:
+ * a latency histogram, successes, failures by SQLState and rows returned or
+ * affected, plus the time spent waiting for a pooled connection.  Each timer
+ * is registered as an MXBean under the "dbproject" JMX domain, and all of
+ * them are rendered in the Prometheus text format for the /metrics endpoint.
+ *
+ */
+
+public class Metrics{
+	// SQLState recorded for rejected arguments and other non SQL failures
+	public static final String INVALID = "invalid";
+	public static final String UNKNOWN = "unknown";
+
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+	/**
+	 * A measured call.
+	 */
+	public interface Call<T>{
+		T call() throws SQLException;
+	}
+
+	public interface TimerMXBean{
+		long getCount();
+		long getSuccessCount();
+		long getRows();
+		double getMeanMicros();
+		double getP50Micros();
+		double getP99Micros();
+		double getP999Micros();
+		double getMaxMicros();
+		Map<String, Long> getErrorsBySqlState();
+	}
+
+	public interface PoolMXBean{
+		int getMaxSize();
+		int getTotal();
+		int getIdle();
+		long getCheckouts();
+		double getWaitP50Micros();
+		double getWaitP99Micros();
+		long getSeatCacheHits();
+		long getSeatCacheMisses();
+		long getResultCacheHits();
+		long getResultCacheMisses();
+		long getResultCacheEvictions();
+		long getResultCacheBytes();
+	}
+
+	/**
+	 * The measurements of one operation or execute method.
+	 */
+	public static final class Timer implements TimerMXBean{
+		private final LatencyHistogram _latencies = new LatencyHistogram();
+		private final LongAdder _successes = new LongAdder();
+		private final LongAdder _rows = new LongAdder();
+		private final ConcurrentHashMap<String, LongAdder> _errors = new ConcurrentHashMap<String, LongAdder>();
+
+		/**
+		 * Runs the call and records its latency and outcome.
+		 */
+		public <T> T time(Call<T> call) throws SQLException {
+			long start = System.nanoTime();
+			try{
+				T value = call.call();
+				this._successes.increment();
+				return value;
+			}catch (SQLException e){
+				error(e.getSQLState() == null ? UNKNOWN : e.getSQLState());
+				throw e;
+			}catch (IllegalArgumentException e){
+				error(INVALID);
+				throw e;
+			}catch (RuntimeException e){
+				error(UNKNOWN);
+				throw e;
+			}finally{
+				this._latencies.record(System.nanoTime() - start);
+			}
+		}
+
+		public void addRows(long rows){
+			this._rows.add(rows);
+		}
+
+		private void error(String sqlState){
+			this._errors.computeIfAbsent(sqlState, s -> new LongAdder()).increment();
+		}
+
+		public LatencyHistogram getLatencies(){
+			return this._latencies;
+		}
+
+		public long getCount(){
+			return this._latencies.getCount();
+		}
+
+		public long getSuccessCount(){
+			return this._successes.sum();
+		}
+
+		public long getRows(){
+			return this._rows.sum();
+		}
+
+		public double getMeanMicros(){
+			return this._latencies.getMean() / 1e3;
+		}
+
+		public double getP50Micros(){
+			return this._latencies.percentile(0.5) / 1e3;
+		}
+
+		public double getP99Micros(){
+			return this._latencies.percentile(0.99) / 1e3;
+		}
+
+		public double getP999Micros(){
+			return this._latencies.percentile(0.999) / 1e3;
+		}
+
+		public double getMaxMicros(){
+			return this._latencies.getMax() / 1e3;
+		}
+
+		public Map<String, Long> getErrorsBySqlState(){
+			Map<String, Long> errors = new TreeMap<String, Long>();
+			for (Map.Entry<String, LongAdder> e : this._errors.entrySet()){
+				errors.put(e.getKey(), e.getValue().sum());
+			}
+			return errors;
+		}
+	}
+
+	private final DBproject _esql;
+	private final ConcurrentHashMap<String, Timer> _operations = new ConcurrentHashMap<String, Timer>();
+	private final ConcurrentHashMap<String, Timer> _executes = new ConcurrentHashMap<String, Timer>();
+	private final LatencyHistogram _connectionWait = new LatencyHistogram();
+	private final List<ObjectName> _registered = new ArrayList<ObjectName>();
+	private final boolean _jmx;
+	private HttpServer _endpoint = null;
+
+	public Metrics(DBproject esql, boolean jmx){
+		this._esql = esql;
+		this._jmx = jmx;
+		if (jmx){
+			register("dbproject:type=ConnectionPool", new PoolMXBean(){
+				public int getMaxSize(){ return pool() == null ? 0 : pool().getMaxSize(); }
+				public int getTotal(){ return pool() == null ? 0 : pool().getTotal(); }
+				public int getIdle(){ return pool() == null ? 0 : pool().getIdle(); }
+				public long getCheckouts(){ return pool() == null ? 0 : pool().getCheckouts(); }
+				public double getWaitP50Micros(){ return Metrics.this._connectionWait.percentile(0.5) / 1e3; }
+				public double getWaitP99Micros(){ return Metrics.this._connectionWait.percentile(0.99) / 1e3; }
+				public long getSeatCacheHits(){ return Metrics.this._esql.getSeatCache().getHits(); }
+				public long getSeatCacheMisses(){ return Metrics.this._esql.getSeatCache().getMisses(); }
+				public long getResultCacheHits(){ return resultCache() == null ? 0 : resultCache().getHits(); }
+				public long getResultCacheMisses(){ return resultCache() == null ? 0 : resultCache().getMisses(); }
+				public long getResultCacheEvictions(){ return resultCache() == null ? 0 : resultCache().getEvictions(); }
+				public long getResultCacheBytes(){ return resultCache() == null ? 0 : resultCache().getBytes(); }
+			});
+		}
+	}
+
+	/**
+	 * Returns the timer of a menu operation, e.g. AddPlane.
+	 */
+	public Timer operation(String name){
+		return timer(this._operations, "Operation", name);
+	}
+
+	/**
+	 * Returns the timer of an execute method, e.g. executeUpdate.
+	 */
+	public Timer execute(String name){
+		return timer(this._executes, "Execute", name);
+	}
+
+	public void connectionWait(long nanos){
+		this._connectionWait.record(nanos);
+	}
+
+	public LatencyHistogram getConnectionWait(){
+		return this._connectionWait;
+	}
+
+	/**
+	 * Serves GET /metrics on the loopback interface.
+	 */
+	public synchronized void startEndpoint(int port) throws IOException {
+		this._endpoint = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 16);
+		this._endpoint.createContext("/metrics", this::handle);
+		this._endpoint.start();
+	}
+
+	public void handle(HttpExchange exchange) throws IOException {
+		byte[] body = prometheus().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	public synchronized void close(){
+		if (this._endpoint != null){
+			this._endpoint.stop(0);
+			this._endpoint = null;
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : this._registered){
+			try{
+				server.unregisterMBean(name);
+			}catch (JMException e){
+				// already gone
+			}
+		}
+		this._registered.clear();
+	}
+
+	/**
+	 * Renders every measurement in the Prometheus text exposition format.
+	 */
+	public String prometheus(){
+		StringBuilder sb = new StringBuilder();
+		timers(sb, "dbproject_operation", "operation", this._operations);
+		timers(sb, "dbproject_execute", "method", this._executes);
+
+		sb.append("# HELP dbproject_connection_wait_seconds Time spent waiting for a pooled connection.\n");
+		sb.append("# TYPE dbproject_connection_wait_seconds summary\n");
+		summary(sb, "dbproject_connection_wait_seconds", "", this._connectionWait);
+
+		ConnectionPool pool = pool();
+		if (pool != null){
+			sb.append("# TYPE dbproject_pool_connections gauge\n");
+			sb.append("dbproject_pool_connections{state=\"total\"} ").append(pool.getTotal()).append('\n');
+			sb.append("dbproject_pool_connections{state=\"idle\"} ").append(pool.getIdle()).append('\n');
+			sb.append("dbproject_pool_connections{state=\"max\"} ").append(pool.getMaxSize()).append('\n');
+			sb.append("# TYPE dbproject_pool_checkouts_total counter\n");
+			sb.append("dbproject_pool_checkouts_total ").append(pool.getCheckouts()).append('\n');
+		}
+		SeatCache cache = this._esql.getSeatCache();
+		sb.append("# TYPE dbproject_seat_cache_requests_total counter\n");
+		sb.append("dbproject_seat_cache_requests_total{result=\"hit\"} ").append(cache.getHits()).append('\n');
+		sb.append("dbproject_seat_cache_requests_total{result=\"miss\"} ").append(cache.getMisses()).append('\n');
+		ResultCache results = resultCache();
+		if (results != null){
+			sb.append("# TYPE dbproject_result_cache_requests_total counter\n");
+			sb.append("dbproject_result_cache_requests_total{result=\"hit\"} ").append(results.getHits()).append('\n');
+			sb.append("dbproject_result_cache_requests_total{result=\"miss\"} ").append(results.getMisses()).append('\n');
+			sb.append("# TYPE dbproject_result_cache_removals_total counter\n");
+			sb.append("dbproject_result_cache_removals_total{cause=\"eviction\"} ").append(results.getEvictions()).append('\n');
+			sb.append("dbproject_result_cache_removals_total{cause=\"invalidation\"} ").append(results.getInvalidations()).append('\n');
+			sb.append("# TYPE dbproject_result_cache_bytes gauge\n");
+			sb.append("dbproject_result_cache_bytes ").append(results.getBytes()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static void timers(StringBuilder sb, String family, String label, Map<String, Timer> timers){
+		Map<String, Timer> sorted = new TreeMap<String, Timer>(timers);
+		sb.append("# HELP ").append(family).append("_latency_seconds Latency of each call.\n");
+		sb.append("# TYPE ").append(family).append("_latency_seconds summary\n");
+		for (Map.Entry<String, Timer> e : sorted.entrySet()){
+			summary(sb, family + "_latency_seconds", label + "=\"" + e.getKey() + "\"", e.getValue()._latencies);
+		}
+		sb.append("# TYPE ").append(family).append("_success_total counter\n");
+		for (Map.Entry<String, Timer> e : sorted.entrySet()){
+			sb.append(family).append("_success_total{").append(label).append("=\"").append(e.getKey()).append("\"} ")
+				.append(e.getValue().getSuccessCount()).append('\n');
+		}
+		sb.append("# TYPE ").append(family).append("_errors_total counter\n");
+		for (Map.Entry<String, Timer> e : sorted.entrySet()){
+			for (Map.Entry<String, Long> error : e.getValue().getErrorsBySqlState().entrySet()){
+				sb.append(family).append("_errors_total{").append(label).append("=\"").append(e.getKey())
+					.append("\",sqlstate=\"").append(error.getKey()).append("\"} ").append(error.getValue()).append('\n');
+			}
+		}
+		sb.append("# TYPE ").append(family).append("_rows_total counter\n");
+		for (Map.Entry<String, Timer> e : sorted.entrySet()){
+			sb.append(family).append("_rows_total{").append(label).append("=\"").append(e.getKey()).append("\"} ")
+				.append(e.getValue().getRows()).append('\n');
+		}
+	}
+
+	private static void summary(StringBuilder sb, String name, String labels, LatencyHistogram h){
+		String sep = labels.isEmpty() ? "" : ",";
+		for (double q : QUANTILES){
+			sb.append(name).append('{').append(labels).append(sep).append("quantile=\"").append(q).append("\"} ")
+				.append(seconds(h.percentile(q))).append('\n');
+		}
+		String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+		sb.append(name).append("_sum").append(braces).append(' ').append(seconds(h.getSum())).append('\n');
+		sb.append(name).append("_count").append(braces).append(' ').append(h.getCount()).append('\n');
+	}
+
+	private static String seconds(long nanos){
+		return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+	}
+
+	private ResultCache resultCache(){
+		return this._esql.getResultCache();
+	}
+
+	private ConnectionPool pool(){
+		return this._esql.getPool();
+	}
+
+	private Timer timer(ConcurrentHashMap<String, Timer> timers, String type, String name){
+		Timer timer = timers.get(name);
+		if (timer != null){
+			return timer;
+		}
+		Timer created = new Timer();
+		timer = timers.putIfAbsent(name, created);
+		if (timer != null){
+			return timer;
+		}
+		if (this._jmx){
+			register("dbproject:type=" + type + ",name=" + name, created);
+		}
+		return created;
+	}
+
+	private synchronized void register(String name, Object bean){
+		try{
+			ObjectName objectName = new ObjectName(name);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (!server.isRegistered(objectName)){
+				server.registerMBean(bean, objectName);
+				this._registered.add(objectName);
+			}
+		}catch (JMException e){
+			System.err.println("Unable to register " + name + ": " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+
+/**
+ * This class receives Postgres NOTIFY messages on a dedicated connection and
+ * hands them to the handlers subscribed to their channel.  The connection is
+ * kept outside the pool because LISTEN is bound to the session.  When the
+ * connection is lost it is reopened after a delay; notifications sent in
+ * between are lost, so every handler is reset after each (re)connect.
+ *
+ */
+
+public class NotifyListener implements Runnable{
+
+	/**
+	 * Receives the notifications of one channel on the listener thread.
+	 */
+	public interface Handler{
+		void notified(String payload);
+
+		// called whenever notifications may have been missed
+		void reset();
+	}
+
+	private final String _url;
+	private final Properties _props;
+	private final int _pollMillis;
+	private final long _reconnectDelayMillis;
+	private final Map<String, List<Handler>> _handlers = new LinkedHashMap<String, List<Handler>>();
+	private volatile boolean _running = false;
+	private volatile Connection _conn = null;
+	private Thread _thread = null;
+
+	public NotifyListener(String url, Properties props, int pollMillis, long reconnectDelayMillis){
+		this._url = url;
+		this._props = props;
+		this._pollMillis = pollMillis;
+		this._reconnectDelayMillis = reconnectDelayMillis;
+	}
+
+	/**
+	 * Registers a handler of a channel.  Must be called before start().
+	 * Handlers of the same channel are called in the order they subscribed.
+	 *
+	 * @param channel the channel name, a plain lower case identifier
+	 */
+	public synchronized void subscribe(String channel, Handler handler){
+		if (this._thread != null){
+			throw new IllegalStateException("Listener already started");
+		}
+		if (!channel.matches("[a-z_][a-z0-9_]*")){
+			throw new IllegalArgumentException("Invalid channel name " + channel);
+		}
+		this._handlers.computeIfAbsent(channel, c -> new ArrayList<Handler>()).add(handler);
+	}
+
+	public synchronized void start(){
+		this._running = true;
+		this._thread = new Thread(this, "notify-listener");
+		this._thread.setDaemon(true);
+		this._thread.start();
+	}
+
+	public void close(){
+		this._running = false;
+		Thread thread;
+		synchronized (this){
+			thread = this._thread;
+		}
+		if (thread != null){
+			thread.interrupt();
+			try{
+				thread.join(this._pollMillis + 1000L);
+			}catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+		}
+		closeConnection();
+	}
+
+	public void run(){
+		while (this._running){
+			try{
+				listen();
+			}catch (SQLException e){
+				if (this._running){
+					System.err.println("Notification listener lost its connection: " + e.getMessage());
+				}
+			}finally{
+				closeConnection();
+				resetHandlers();
+			}
+			try{
+				Thread.sleep(this._reconnectDelayMillis);
+			}catch (InterruptedException e){
+				// woken up by close()
+			}
+		}//end while
+	}
+
+	private void listen() throws SQLException {
+		this._conn = DriverManager.getConnection(this._url, this._props);
+		Statement stmt = this._conn.createStatement();
+		for (String channel : this._handlers.keySet()){
+			stmt.execute("LISTEN " + channel);
+		}
+		stmt.close();
+		// anything sent before LISTEN took effect is unknown
+		resetHandlers();
+
+		PGConnection pg = this._conn.unwrap(PGConnection.class);
+		while (this._running){
+			PGNotification[] notifications = pg.getNotifications(this._pollMillis);
+			if (notifications == null){
+				continue;
+			}
+			for (PGNotification n : notifications){
+				List<Handler> handlers = this._handlers.get(n.getName());
+				if (handlers != null){
+					for (Handler handler : handlers){
+						deliver(handler, n.getName(), n.getParameter());
+					}
+				}
+			}
+		}//end while
+	}
+
+	// a handler that fails must not stop the listener, or no handler would hear of changes again
+	private static void deliver(Handler handler, String channel, String payload){
+		try{
+			handler.notified(payload);
+		}catch (RuntimeException e){
+			System.err.println("Unable to handle notification " + channel + " '" + payload + "': " + e);
+			// the change was lost, so whatever the handler keeps may be stale
+			reset(handler);
+		}
+	}
+
+	private static void reset(Handler handler){
+		try{
+			handler.reset();
+		}catch (RuntimeException e){
+			System.err.println("Unable to reset a notification handler: " + e);
+		}
+	}
+
+	private void resetHandlers(){
+		for (List<Handler> handlers : this._handlers.values()){
+			for (Handler handler : handlers){
+				reset(handler);
+			}
+		}
+	}
+
+	private void closeConnection(){
+		Connection conn = this._conn;
+		this._conn = null;
+		if (conn != null){
+			try{
+				conn.close();
+			}catch (SQLException e){
+				// already broken
+			}
+		}
+	}
+}
@@ -0,0 +1,453 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * This class holds the nine menu operations without any console interaction.
+ * Every method validates its arguments, runs the statements and returns the
+ * outcome, so the same logic serves the interactive menu and the service
+ * modes.  Invalid arguments raise IllegalArgumentException; database failures
+ * raise SQLException.  Every operation is timed under its menu name in the
+ * metrics of DBproject.
+ *
+ */
+
+public final class Operations{
+
+	//typed result buffers reused by the lookups of each thread
+	private static final ThreadLocal<TypedResult> RESULT = ThreadLocal.withInitial(TypedResult::new);
+	//departure dates as the menu builds them, without zero padding
+	private static final DateTimeFormatter DEPARTURE_DATE = DateTimeFormatter.ofPattern("uuuu-M-d").withResolverStyle(ResolverStyle.STRICT);
+
+	private Operations(){
+	}
+
+	//=========================================================================================================================================================================
+
+	public static void addPlane(DBproject esql, int planeId, String make, String model, int year, int seats) throws SQLException {//1
+		timed(esql, "AddPlane", () -> {
+			require(make != null && make.length() > 0 && make.length() <= 32, "make must be 1 to 32 characters");
+			require(model != null && model.length() > 0 && model.length() <= 64, "model must be 1 to 64 characters");
+			require(year >= 1970 && year <= 2020, "year must be between 1970 and 2020");
+			require(seats > 0 && seats < 500, "seats must be between 1 and 499");
+			return esql.executeUpdate(Queries.INSERT_PLANE, planeId, make, model, year, seats);
+		});
+	}
+
+	public static void addPilot(DBproject esql, int pilotId, String fullname, String nationality) throws SQLException {//2
+		timed(esql, "AddPilot", () -> {
+			require(fullname != null && fullname.length() > 0, "fullname is required");
+			require(nationality != null && nationality.length() > 0, "nationality is required");
+			return esql.executeUpdate(Queries.INSERT_PILOT, pilotId, fullname, nationality);
+		});
+	}
+
+	public static void addFlight(DBproject esql, int flightNumber, int cost, int numSold, int numStops,
+			String departureDate, String arrivalDate, String departureAirport, String arrivalAirport,
+			int planeId, int pilotId) throws SQLException {//3
+		timed(esql, "AddFlight", () -> {
+			require(cost > 0, "cost must be greater than 0");
+			require(numSold >= 0, "number of tickets sold must be at least 0");
+			require(numStops >= 0, "number of stops must be at least 0");
+			require(departureAirport != null && departureAirport.length() <= 5, "departure airport code must be at most 5 characters");
+			require(arrivalAirport != null && arrivalAirport.length() <= 5, "arrival airport code must be at most 5 characters");
+
+			// the flight, its plane and pilot, and its schedule are written together or not at all
+			UnitOfWork work = esql.newUnitOfWork();
+			addFlight(esql, work, flightNumber, cost, numSold, numStops, departureDate, arrivalDate, departureAirport, arrivalAirport, planeId, pilotId);
+			try{
+				return work.commit();
+			}catch (SQLException e){
+				// foreign key violation on plane_id or pilot_id
+				if ("23503".equals(e.getSQLState())){
+					throw new IllegalArgumentException(String.valueOf(e.getMessage()).contains("pilot_id")
+						? "pilot " + pilotId + " does not exist" : "plane " + planeId + " does not exist");
+				}
+				throw e;
+			}
+		});
+	}
+
+	/**
+	 * Adds the writes of a new flight to a unit of work: the flight, the
+	 * plane and pilot flying it, and its schedule.
+	 */
+	static void addFlight(DBproject esql, UnitOfWork work, int flightNumber, int cost, int numSold, int numStops,
+			String departureDate, String arrivalDate, String departureAirport, String arrivalAirport,
+			int planeId, int pilotId) throws SQLException {
+		work.add(Queries.INSERT_FLIGHT, flightNumber, cost, numSold, numStops, departureDate, arrivalDate, arrivalAirport, departureAirport);
+		work.add(Queries.INSERT_FLIGHT_INFO, esql.getFlightInfoIds().nextId(), flightNumber, pilotId, planeId);
+		work.add(Queries.INSERT_SCHEDULE, esql.getScheduleIds().nextId(), flightNumber, departureDate, arrivalDate);
+	}
+
+	public static void addTechnician(DBproject esql, int technicianId, String fullname) throws SQLException {//4
+		timed(esql, "AddTechnician", () -> {
+			require(fullname != null && fullname.length() > 0, "fullname is required");
+			return esql.executeUpdate(Queries.INSERT_TECHNICIAN, technicianId, fullname);
+		});
+	}
+
+	/**
+	 * Books a flight for a customer and returns the resulting reservation
+	 * status.  A new reservation gets the requested status when the flight has
+	 * an open seat and is waitlisted otherwise; requesting W always waitlists.
+	 * An existing waitlisted reservation moves to the requested status once a
+	 * seat is free, and a reserved one can be confirmed.  A confirmed
+	 * reservation is never changed.
+	 *
+	 * Taking the seat (num_sold + 1) and writing the reservation happen in a
+	 * single statement, so concurrent bookings cannot oversell a flight and a
+	 * new booking costs one round trip.
+	 *
+	 * @param status the requested status, one of C, R or W
+	 * @return the status of the customer's reservation after the call
+	 */
+	public static String bookFlight(DBproject esql, int customerId, int flightNumber, String status) throws SQLException {//5
+		return timed(esql, "BookFlight", () -> {
+			try{
+				return book(esql, customerId, flightNumber, status);
+			}finally{
+				// later reads of the flight see the booking
+				esql.wrote(flightNumber);
+			}
+		});
+	}
+
+	private static String book(DBproject esql, int customerId, int flightNumber, String status) throws SQLException {
+		require("C".equals(status) || "R".equals(status) || "W".equals(status), "status must be C, R or W");
+
+		TypedResult result = RESULT.get();
+		long seats = esql.getSeatCache().generation();
+		long reservations = sequence(esql);
+		int newReservationNum = esql.getReservationIds().nextId();
+		boolean inserted;
+		try{
+			esql.executeQueryAndReturnTyped(result, Queries.BOOK_NEW_RESERVATION,
+				customerId, flightNumber, flightNumber, status, newReservationNum, customerId, flightNumber, status);
+			inserted = !result.isEmpty();
+		}catch (SQLException e){
+			// foreign key violation on cid or fid
+			if ("23503".equals(e.getSQLState())){
+				throw new IllegalArgumentException("customer " + customerId + " or flight " + flightNumber + " does not exist");
+			}
+			// a concurrent booking of the same customer and flight won (trigger reservation_unique)
+			if (!"23505".equals(e.getSQLState())){
+				throw e;
+			}
+			inserted = false;
+		}
+		if (inserted){
+			indexed(esql, newReservationNum, customerId, flightNumber, result.getString(0, "status"), reservations);
+			return booked(esql, flightNumber, result, seats);
+		}
+
+		// the customer already has a reservation on this flight
+		esql.executeQueryAndReturnTyped(result, Queries.RESERVATION_BY_CUSTOMER_AND_FLIGHT, customerId, flightNumber);
+		int reservationNum = result.getInt(0, "rnum");
+		String current = result.getString(0, "status");
+		if (current.equals("W") && !status.equals("W")){
+			esql.executeQueryAndReturnTyped(result, Queries.PROMOTE_WAITLISTED, reservationNum, flightNumber, status, reservationNum);
+			if (result.isEmpty()){
+				return "W";
+			}
+			indexed(esql, reservationNum, customerId, flightNumber, result.getString(0, "status"), reservations);
+			return booked(esql, flightNumber, result, seats);
+		}
+		if (current.equals("R") && status.equals("C")){
+			esql.executeQueryAndReturnTyped(result, Queries.CONFIRM_RESERVED, reservationNum);
+			if (result.isEmpty()){
+				return current;
+			}
+			indexed(esql, reservationNum, customerId, flightNumber, "C", reservations);
+			return "C";
+		}
+		return current;
+	}
+
+	/**
+	 * Returns the number of open seats on a flight departing on the given date.
+	 *
+	 * @param departureDate the departure date as yyyy-mm-dd
+	 */
+	public static int availableSeats(DBproject esql, int flightNumber, String departureDate) throws SQLException {//6
+		return availability(esql, flightNumber, departureDate).getAvailable();
+	}
+
+	/**
+	 * Returns the seats and seats sold of a flight departing on the given
+	 * date, from the seat cache.
+	 *
+	 * @param departureDate the departure date as yyyy-m-d, optionally followed
+	 *        by a time, which is ignored (the menu asks for one)
+	 */
+	public static SeatCache.Availability availability(DBproject esql, int flightNumber, String departureDate) throws SQLException {
+		return timed(esql, "ListNumberOfAvailableSeats", () -> {
+			long departureDay;
+			try{
+				departureDay = LocalDate.parse(departureDate.trim().split("[ T]")[0], DEPARTURE_DATE).toEpochDay();
+			}catch (DateTimeParseException e){
+				throw new IllegalArgumentException("departure date must be yyyy-mm-dd");
+			}
+			SeatCache.Availability availability = esql.getSeatCache().get(flightNumber);
+			require(availability != null && availability.getDepartureDay() == departureDay,
+				"flight " + flightNumber + " does not depart on " + departureDate);
+			return availability;
+		});
+	}
+
+	public static List<List<String>> repairsPerPlane(DBproject esql) throws SQLException {//7
+		return timedRows(esql, "ListsTotalNumberOfRepairsPerPlane", () -> esql.readOnly(null, () -> esql.executeQueryAndReturnResult(Queries.REPAIRS_PER_PLANE)));
+	}
+
+	public static List<List<String>> repairsPerYear(DBproject esql) throws SQLException {//8
+		return timedRows(esql, "ListTotalNumberOfRepairsPerYear", () -> esql.readOnly(null, () -> esql.executeQueryAndReturnResult(Queries.REPAIRS_PER_YEAR)));
+	}
+
+	/**
+	 * Returns the number of reservations of a flight with the status, from
+	 * the reservation index unless dbproject.reservationIndex is false, in
+	 * which case it is counted on a replica when there is one.
+	 */
+	public static int passengersWithStatus(DBproject esql, int flightNumber, String status) throws SQLException {//9
+		return timed(esql, "FindPassengersCountWithStatus", () -> {
+			require("C".equals(status) || "R".equals(status) || "W".equals(status), "status must be C, R or W");
+			ReservationIndex index = esql.getReservationIndex();
+			if (index != null){
+				return index.count(flightNumber, status);
+			}
+			return esql.readOnly(flightNumber, () ->
+				esql.executeQueryAndReturnTyped(RESULT.get(), Queries.PASSENGERS_WITH_STATUS, status, flightNumber).getInt(0, "NumberOfPassengers"));
+		});
+	}
+
+	//=========================================================================================================================================================================
+
+	/**
+	 * Cancels the customer's reservation on a flight.  A confirmed or
+	 * reserved seat is given back to the flight, which lets the waitlist
+	 * promoter fill it.
+	 *
+	 * @return the status the cancelled reservation had
+	 */
+	public static String cancelReservation(DBproject esql, int customerId, int flightNumber) throws SQLException {
+		return timed(esql, "CancelReservation", () -> {
+			long seats = esql.getSeatCache().generation();
+			long reservations = sequence(esql);
+			TypedResult result = esql.executeQueryAndReturnTyped(RESULT.get(), Queries.CANCEL_RESERVATION, customerId, flightNumber, flightNumber);
+			require(!result.isEmpty(), "customer " + customerId + " has no reservation on flight " + flightNumber);
+			esql.wrote(flightNumber);
+			ReservationIndex index = esql.getReservationIndex();
+			if (index != null){
+				for (int i = 0; i < result.size(); i++){
+					index.remove(result.getInt(i, "rnum"), reservations);
+				}
+			}
+			return booked(esql, flightNumber, result, seats);
+		});
+	}
+
+	/**
+	 * Moves the oldest waitlisted reservations of a flight to the given
+	 * status, as many as the flight has open seats, in one statement.
+	 *
+	 * @param status the status given to the promoted reservations, C or R
+	 * @return the number of reservations promoted
+	 */
+	public static int promoteWaitlist(DBproject esql, int flightNumber, String status) throws SQLException {
+		return timed(esql, "PromoteWaitlist", () -> {
+			require("C".equals(status) || "R".equals(status), "status must be C or R");
+			long seats = esql.getSeatCache().generation();
+			TypedResult result = esql.executeQueryAndReturnTyped(RESULT.get(), Queries.PROMOTE_WAITLIST, flightNumber, status, flightNumber);
+			int promoted = result.getInt(0, "promoted");
+			if (promoted > 0){
+				esql.wrote(flightNumber);
+				esql.getSeatCache().sold(flightNumber, result.getInt(0, "num_sold"), seats);
+			}
+			return promoted;
+		});
+	}
+
+	/**
+	 * Finds itineraries of connecting flights between two airports with a
+	 * seat on every flight, from the in-memory route graph.
+	 *
+	 * @param firstDate the earliest departure date as yyyy-mm-dd
+	 * @param lastDate the latest departure date as yyyy-mm-dd
+	 * @param maxLegs the most flights of an itinerary, 1 to 3
+	 * @param rank cost or arrival
+	 * @return at most limit itineraries, best first
+	 */
+	public static List<RouteGraph.Itinerary> searchConnections(DBproject esql, String from, String to, String firstDate, String lastDate,
+			int maxLegs, int seats, String rank, int limit) throws SQLException {
+		return timed(esql, "SearchConnections", () -> {
+			require(from != null && from.trim().length() > 0 && from.trim().length() <= 5, "departure airport code must be 1 to 5 characters");
+			require(to != null && to.trim().length() > 0 && to.trim().length() <= 5, "arrival airport code must be 1 to 5 characters");
+			require(maxLegs >= 1 && maxLegs <= 3, "an itinerary has 1 to 3 flights");
+			require(seats >= 1, "seats must be at least 1");
+			require(limit >= 1 && limit <= 100, "limit must be between 1 and 100");
+			LocalDate first = date(firstDate, "first date");
+			LocalDate last = date(lastDate, "last date");
+			require(!last.isBefore(first) && last.toEpochDay() - first.toEpochDay() < 31, "the dates must span 1 to 31 days");
+			return esql.getRouteGraph().search(from, to, first, last, maxLegs, seats, RouteGraph.Rank.parse(rank), limit);
+		});
+	}
+
+	public static boolean isFlightFull(DBproject esql, int flightNumber) throws SQLException {
+		return timed(esql, "isFlightFull", () -> {
+			SeatCache.Availability availability = esql.getSeatCache().get(flightNumber);
+			require(availability != null, "flight " + flightNumber + " has no plane assigned");
+			return availability.isFull();
+		});
+	}
+
+	/**
+	 * Runs the call and records its latency and outcome under the operation
+	 * name in the metrics.
+	 */
+	static <T> T timed(DBproject esql, String operation, Metrics.Call<T> call) throws SQLException {
+		return esql.getMetrics().operation(operation).time(call);
+	}
+
+	// as timed, also counting the rows of the returned result
+	static List<List<String>> timedRows(DBproject esql, String operation, Metrics.Call<List<List<String>>> call) throws SQLException {
+		Metrics.Timer timer = esql.getMetrics().operation(operation);
+		List<List<String>> rows = timer.time(call);
+		timer.addRows(rows.size());
+		return rows;
+	}
+
+	// writes a reservation of this client through to the reservation index,
+	// unless a change was notified since the index sequence was read before the booking
+	private static void indexed(DBproject esql, int reservationNum, int customerId, int flightNumber, String status, long reservations){
+		ReservationIndex index = esql.getReservationIndex();
+		if (index != null){
+			index.put(reservationNum, customerId, flightNumber, status, reservations);
+		}
+	}
+
+	// the reservation index sequence, 0 without an index
+	private static long sequence(DBproject esql){
+		ReservationIndex index = esql.getReservationIndex();
+		return index == null ? 0 : index.sequence();
+	}
+
+	// writes the num_sold of a booking that took or gave back a seat through to the seat cache,
+	// unless a change was notified since the seat cache generation was read before the booking
+	private static String booked(DBproject esql, int flightNumber, TypedResult result, long seats){
+		if (!result.isNull(0, "num_sold")){
+			esql.getSeatCache().sold(flightNumber, result.getInt(0, "num_sold"), seats);
+		}
+		return result.getString(0, "status");
+	}
+
+	/**
+	 * Runs an operation by its menu name with named arguments.  Used by the
+	 * service modes, which receive operations as text.
+	 *
+	 * @param name the operation name, e.g. AddPlane
+	 * @param args the operation arguments by name
+	 * @return the outcome as a map of named values
+	 */
+	public static Map<String, Object> dispatch(DBproject esql, String name, Map<String, String> args) throws SQLException {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		switch (name){
+			case "AddPlane":
+				addPlane(esql, intArg(args, "id"), strArg(args, "make"), strArg(args, "model"), intArg(args, "year"), intArg(args, "seats"));
+				result.put("id", intArg(args, "id"));
+				break;
+			case "AddPilot":
+				addPilot(esql, intArg(args, "id"), strArg(args, "fullname"), strArg(args, "nationality"));
+				result.put("id", intArg(args, "id"));
+				break;
+			case "AddFlight":
+				addFlight(esql, intArg(args, "fnum"), intArg(args, "cost"), intArg(args, "num_sold"), intArg(args, "num_stops"),
+					strArg(args, "departure_date"), strArg(args, "arrival_date"), strArg(args, "departure_airport"), strArg(args, "arrival_airport"),
+					intArg(args, "plane_id"), intArg(args, "pilot_id"));
+				result.put("fnum", intArg(args, "fnum"));
+				break;
+			case "AddTechnician":
+				addTechnician(esql, intArg(args, "id"), strArg(args, "fullname"));
+				result.put("id", intArg(args, "id"));
+				break;
+			case "BookFlight":
+				result.put("status", bookFlight(esql, intArg(args, "cid"), intArg(args, "fnum"), strArg(args, "status")));
+				break;
+			case "ListNumberOfAvailableSeats":
+				result.put("available", availableSeats(esql, intArg(args, "fnum"), strArg(args, "date")));
+				break;
+			case "ListsTotalNumberOfRepairsPerPlane":
+				result.put("rows", repairsPerPlane(esql));
+				break;
+			case "ListTotalNumberOfRepairsPerYear":
+				result.put("rows", repairsPerYear(esql));
+				break;
+			case "FindPassengersCountWithStatus":
+				result.put("count", passengersWithStatus(esql, intArg(args, "fnum"), strArg(args, "status")));
+				break;
+			case "SearchConnections":
+				List<Object> itineraries = new ArrayList<Object>();
+				for (RouteGraph.Itinerary itinerary : searchConnections(esql, strArg(args, "from"), strArg(args, "to"),
+						strArg(args, "date"), args.getOrDefault("until", args.get("date")),
+						args.containsKey("legs") ? intArg(args, "legs") : 2, args.containsKey("seats") ? intArg(args, "seats") : 1,
+						args.getOrDefault("rank", "cost"), args.containsKey("limit") ? intArg(args, "limit") : 10)){
+					itineraries.add(itinerary.toMap());
+				}
+				result.put("itineraries", itineraries);
+				break;
+			case "CancelReservation":
+				result.put("status", cancelReservation(esql, intArg(args, "cid"), intArg(args, "fnum")));
+				break;
+			default:
+				throw new IllegalArgumentException("unknown operation " + name);
+		}
+		return result;
+	}
+
+	private static void require(boolean condition, String message){
+		if (!condition){
+			throw new IllegalArgumentException(message);
+		}
+	}
+
+	private static LocalDate date(String value, String name){
+		require(value != null, name + " is required");
+		try{
+			return LocalDate.parse(value.trim());
+		}catch (DateTimeParseException e){
+			throw new IllegalArgumentException(name + " must be yyyy-mm-dd");
+		}
+	}
+
+	private static String strArg(Map<String, String> args, String name){
+		String value = args.get(name);
+		require(value != null, "missing argument " + name);
+		return value;
+	}
+
+	private static int intArg(Map<String, String> args, String name){
+		try{
+			return Integer.parseInt(strArg(args, name).trim());
+		}catch (NumberFormatException e){
+			throw new IllegalArgumentException("argument " + name + " must be an integer");
+		}
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class runs EXPLAIN (ANALYZE, BUFFERS) for every statement in Queries
+ * with sample values taken from the database, and fails when a plan scans a
+ * large table sequentially or runs longer than its latency budget.  Every
+ * statement is rolled back, so it can run against a loaded database; only
+ * NEXT_ID_BLOCK uses up one id block.
+ *
+ * Run it against a database loaded at production scale.  On the small sample
+ * data the planner rightly prefers sequential scans.
+ *
+ *   java PlanCheck <dbname> <port> <user>
+ *
+ * A statement added to Queries without sample values here fails the check.
+ *
+ */
+
+public class PlanCheck{
+	// tables that must be read through an index unless a check allows otherwise
+	static final Set<String> LARGE_TABLES = new HashSet<String>(Arrays.asList(
+		"customer", "flight", "flightinfo", "reservation", "repairs", "schedule"));
+	// id used by the inserts, which are rolled back
+	static final int NEW_ID = Integer.MAX_VALUE - 1;
+
+	private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+	private static final Pattern RUNTIME = Pattern.compile("(?i)(Execution time|Total runtime): ([0-9.]+) ms");
+
+	/**
+	 * The sample values of one statement and what its plan may do.
+	 */
+	static final class Check{
+		final Object[] params;
+		final Set<String> seqScanAllowed;
+		final double budgetMillis;
+
+		Check(double budgetMillis, String[] seqScanAllowed, Object... params){
+			this.params = params;
+			this.seqScanAllowed = new HashSet<String>(Arrays.asList(seqScanAllowed));
+			this.budgetMillis = budgetMillis;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3){
+			System.err.println("Usage: java [-classpath <classpath>] " + PlanCheck.class.getName() + " <dbname> <port> <user>");
+			return;
+		}
+		Class.forName("org.postgresql.Driver");
+		Properties props = new Properties();
+		props.setProperty("user", args[2]);
+		props.setProperty("password", "");
+		Connection conn = DriverManager.getConnection("jdbc:postgresql://localhost:" + args[1] + "/" + args[0], props);
+		int failures;
+		try{
+			conn.setAutoCommit(false);
+			failures = run(conn, checks(conn));
+		}finally{
+			conn.close();
+		}
+		System.out.println(failures == 0 ? "All plans passed" : failures + " plan(s) failed");
+		if (failures > 0){
+			System.exit(1);
+		}
+	}
+
+	static int run(Connection conn, Map<String, Check> checks) throws SQLException, IllegalAccessException {
+		int failures = 0;
+		for (Field field : Queries.class.getFields()){
+			if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class){
+				continue;
+			}
+			String name = field.getName();
+			Check check = checks.get(name);
+			if (check == null){
+				System.out.println(String.format("FAIL %-36s no sample values in PlanCheck", name));
+				failures++;
+				continue;
+			}
+			List<String> problems = new ArrayList<String>();
+			String plan;
+			try{
+				plan = explain(conn, inline((String) field.get(null), check.params));
+			}catch (SQLException e){
+				System.out.println(String.format("FAIL %-36s %s", name, e.getMessage()));
+				failures++;
+				continue;
+			}
+
+			Matcher scan = SEQ_SCAN.matcher(plan);
+			while (scan.find()){
+				String table = scan.group(1).toLowerCase(Locale.ROOT);
+				if (LARGE_TABLES.contains(table) && !check.seqScanAllowed.contains(table)){
+					problems.add("sequential scan of " + table);
+				}
+			}
+			Matcher runtime = RUNTIME.matcher(plan);
+			double millis = runtime.find() ? Double.parseDouble(runtime.group(2)) : -1;
+			if (millis > check.budgetMillis){
+				problems.add(String.format("%.2f ms over the %.0f ms budget", millis, check.budgetMillis));
+			}
+
+			if (problems.isEmpty()){
+				System.out.println(String.format("ok   %-36s %8.2f ms", name, millis));
+			}
+			else {
+				failures++;
+				System.out.println(String.format("FAIL %-36s %8.2f ms  %s", name, millis, String.join(", ", problems)));
+				System.out.println(plan);
+			}
+		}//end for
+		return failures;
+	}
+
+	/**
+	 * Returns the sample values of every statement, read from the database.
+	 */
+	static Map<String, Check> checks(Connection conn) throws SQLException {
+		TypedResult sample = new TypedResult();
+		Statement stmt = conn.createStatement();
+		ResultSet rs = stmt.executeQuery(
+			"SELECT R.rnum, R.cid, R.fid, F.actual_departure_date, FI.pilot_id, FI.plane_id " +
+			"FROM Reservation R, Flight F, FlightInfo FI WHERE F.fnum = R.fid AND FI.flight_id = F.fnum " +
+			"ORDER BY R.status = 'W' DESC LIMIT 1");
+		sample.load(rs);
+		rs.close();
+		if (sample.isEmpty()){
+			throw new SQLException("No reservation on a flight with a plane to take sample values from");
+		}
+		int rnum = sample.getInt(0, "rnum");
+		int cid = sample.getInt(0, "cid");
+		int fnum = sample.getInt(0, "fid");
+		String date = sample.getString(0, "actual_departure_date");
+		int pilotId = sample.getInt(0, "pilot_id");
+		int planeId = sample.getInt(0, "plane_id");
+		rs = stmt.executeQuery("SELECT T.id FROM Technician T LIMIT 1");
+		int technicianId = rs.next() ? rs.getInt(1) : 0;
+		rs.close();
+		stmt.close();
+
+		double budget = Double.parseDouble(System.getProperty("dbproject.plan.budgetMillis", "20"));
+		double reportBudget = Double.parseDouble(System.getProperty("dbproject.plan.reportBudgetMillis", "500"));
+		String[] none = new String[0];
+
+		Map<String, Check> checks = new LinkedHashMap<String, Check>();
+		checks.put("PLANE_BY_ID", new Check(budget, none, planeId));
+		checks.put("PLANE_IDS_IN", new Check(budget, none, "{" + planeId + "," + NEW_ID + "}"));
+		checks.put("INSERT_PLANE", new Check(budget, none, NEW_ID, "Boeing", "747", 2000, 300));
+		checks.put("PILOT_BY_ID", new Check(budget, none, pilotId));
+		checks.put("PILOT_IDS_IN", new Check(budget, none, "{" + pilotId + "," + NEW_ID + "}"));
+		checks.put("INSERT_PILOT", new Check(budget, none, NEW_ID, "Plan Check", "Nowhere"));
+		checks.put("TECHNICIAN_BY_ID", new Check(budget, none, technicianId));
+		checks.put("INSERT_TECHNICIAN", new Check(budget, none, NEW_ID, "Plan Check"));
+		checks.put("CUSTOMER_BY_ID", new Check(budget, none, cid));
+		checks.put("CUSTOMER_IDS", new Check(reportBudget, new String[]{"customer"}));
+		checks.put("FLIGHT_BY_ID", new Check(budget, none, fnum));
+		checks.put("FLIGHT_NUMS_IN", new Check(budget, none, "{" + fnum + "," + NEW_ID + "}"));
+		checks.put("FLIGHT_BY_DEPARTURE_DATE", new Check(budget, none, date));
+		checks.put("INSERT_FLIGHT", new Check(budget, none, NEW_ID, 100, 0, 0, date, date, "AAAAA", "BBBBB"));
+		checks.put("INSERT_FLIGHT_INFO", new Check(budget, none, NEW_ID, fnum, pilotId, planeId));
+		checks.put("INSERT_SCHEDULE", new Check(budget, none, NEW_ID, fnum, date, date));
+		checks.put("FLIGHT_NUM_SOLD", new Check(budget, none, fnum));
+		checks.put("FLIGHT_SEATS_AND_SOLD", new Check(budget, none, fnum));
+		checks.put("PLANE_SEATS_BY_FLIGHT", new Check(budget, none, fnum));
+		checks.put("ROUTE_LEGS", new Check(reportBudget, new String[]{"flight", "flightinfo", "schedule"}));
+		checks.put("ROUTE_LEGS_IN", new Check(budget, none, "{" + fnum + "," + NEW_ID + "}"));
+		checks.put("RESERVATION_BY_CUSTOMER_AND_FLIGHT", new Check(budget, none, cid, fnum));
+		checks.put("BOOK_NEW_RESERVATION", new Check(budget, none, cid, fnum, fnum, "C", NEW_ID, cid, fnum, "C"));
+		checks.put("PROMOTE_WAITLISTED", new Check(budget, none, rnum, fnum, "C", rnum));
+		checks.put("CONFIRM_RESERVED", new Check(budget, none, rnum));
+		checks.put("CANCEL_RESERVATION", new Check(budget, none, cid, fnum, fnum));
+		checks.put("PROMOTE_WAITLIST", new Check(budget, none, fnum, "R", fnum));
+		checks.put("WAITLISTED_FLIGHTS", new Check(reportBudget, none));
+		checks.put("PASSENGERS_WITH_STATUS", new Check(budget, none, "C", fnum));
+		checks.put("RESERVATION_INDEX", new Check(reportBudget, new String[]{"reservation"}));
+		checks.put("PASSENGERS_BY_STATUS", new Check(reportBudget, new String[]{"reservation"}));
+		checks.put("RESERVATIONS_BY_FLIGHT", new Check(reportBudget, new String[]{"reservation"}));
+		checks.put("REPLICA_LAG", new Check(budget, none));
+		checks.put("CURRENT_WAL_LSN", new Check(budget, none));
+		checks.put("NEXT_ID_BLOCK", new Check(budget, none, "reservation_rnum_hi"));
+		checks.put("REPAIRS_PER_PLANE", new Check(budget, none));
+		checks.put("REPAIRS_PER_YEAR", new Check(budget, none));
+		return checks;
+	}
+
+	private static String explain(Connection conn, String sql) throws SQLException {
+		StringBuilder plan = new StringBuilder();
+		Statement stmt = conn.createStatement();
+		try{
+			ResultSet rs = stmt.executeQuery("EXPLAIN (ANALYZE, BUFFERS) " + sql);
+			while (rs.next()){
+				plan.append("    ").append(rs.getString(1)).append('\n');
+			}
+			rs.close();
+		}finally{
+			stmt.close();
+			// ANALYZE really runs the statement
+			conn.rollback();
+		}
+		return plan.toString();
+	}
+
+	/**
+	 * Replaces the placeholders with the values as SQL literals.  EXPLAIN
+	 * cannot take bind parameters.
+	 */
+	static String inline(String sql, Object[] params){
+		StringBuilder sb = new StringBuilder();
+		int p = 0;
+		for (int i = 0; i < sql.length(); i++){
+			char c = sql.charAt(i);
+			if (c != '?'){
+				sb.append(c);
+			}
+			else if (p == params.length){
+				throw new IllegalArgumentException("more placeholders than the " + params.length + " values");
+			}
+			else if (params[p] instanceof Number){
+				sb.append(params[p++]);
+			}
+			else {
+				sb.append('\'').append(String.valueOf(params[p++]).replace("'", "''")).append('\'');
+			}
+		}
+		if (p != params.length){
+			throw new IllegalArgumentException(params.length + " values for " + p + " placeholders");
+		}
+		return sb.toString();
+	}
+}
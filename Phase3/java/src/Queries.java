@@ -0,0 +1,218 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+/**
+ * This class holds every SQL statement issued by the menu operations.  Each
+ * statement uses '?' placeholders so that the same statement shape can be
+ * prepared once per connection and reused with different values.
+ *
+ */
+
+public final class Queries{
+
+	private Queries(){
+	}
+
+	//=================================== Plane ===================================
+	public static final String PLANE_BY_ID =
+		"SELECT * FROM Plane P WHERE P.id = ?";
+	public static final String INSERT_PLANE =
+		"INSERT INTO Plane VALUES (?, ?, ?, ?, ?)";
+	// the given ids, as an array literal like {1,2,3}, that exist
+	public static final String PLANE_IDS_IN =
+		"SELECT P.id FROM Plane P WHERE P.id = ANY (CAST(? AS INTEGER[]))";
+
+	//=================================== Pilot ===================================
+	public static final String PILOT_BY_ID =
+		"SELECT * FROM Pilot P WHERE P.id = ?";
+	public static final String INSERT_PILOT =
+		"INSERT INTO Pilot VALUES (?, ?, ?)";
+	public static final String PILOT_IDS_IN =
+		"SELECT P.id FROM Pilot P WHERE P.id = ANY (CAST(? AS INTEGER[]))";
+
+	//================================= Technician ================================
+	public static final String TECHNICIAN_BY_ID =
+		"SELECT * FROM Technician T WHERE T.id = ?";
+	public static final String INSERT_TECHNICIAN =
+		"INSERT INTO Technician VALUES (?, ?)";
+
+	//================================== Customer =================================
+	public static final String CUSTOMER_BY_ID =
+		"SELECT * FROM Customer C WHERE C.id = ?";
+	public static final String CUSTOMER_IDS =
+		"SELECT C.id FROM Customer C ORDER BY C.id";
+
+	//=================================== Flight ==================================
+	public static final String FLIGHT_BY_ID =
+		"SELECT * FROM Flight F WHERE F.fnum = ?";
+	public static final String FLIGHT_NUMS_IN =
+		"SELECT F.fnum FROM Flight F WHERE F.fnum = ANY (CAST(? AS INTEGER[]))";
+	public static final String FLIGHT_BY_DEPARTURE_DATE =
+		"SELECT * FROM Flight F WHERE F.actual_departure_date = CAST(? AS DATE)";
+	public static final String INSERT_FLIGHT =
+		"INSERT INTO Flight VALUES (?, ?, ?, ?, CAST(? AS DATE), CAST(? AS DATE), ?, ?)";
+	public static final String INSERT_FLIGHT_INFO =
+		"INSERT INTO FlightInfo VALUES (?, ?, ?, ?)";
+	public static final String INSERT_SCHEDULE =
+		"INSERT INTO Schedule VALUES (?, ?, CAST(? AS TIMESTAMP), CAST(? AS TIMESTAMP))";
+	public static final String FLIGHT_NUM_SOLD =
+		"SELECT F.num_sold FROM Flight F WHERE F.fnum = ?";
+	public static final String FLIGHT_SEATS_AND_SOLD =
+		"SELECT P.seats, F.num_sold, F.actual_departure_date FROM Flight F, FlightInfo FI, Plane P WHERE F.fnum = ? AND FI.flight_id = F.fnum AND P.id = FI.plane_id";
+	public static final String PLANE_SEATS_BY_FLIGHT =
+		"SELECT P.seats FROM Plane P WHERE P.id = (SELECT FI.plane_id FROM FlightInfo FI WHERE FI.flight_id = ?)";
+
+	//=================================== Routes ==================================
+	// every flight as a leg of the route graph, times in minutes since the epoch
+	public static final String ROUTE_LEGS =
+		"SELECT F.fnum, F.cost, F.departure_airport, F.arrival_airport," +
+		" CAST(EXTRACT(EPOCH FROM S.departure_time) AS BIGINT) / 60 AS departure_minute," +
+		" CAST(EXTRACT(EPOCH FROM S.arrival_time) AS BIGINT) / 60 AS arrival_minute," +
+		" P.seats, F.num_sold " +
+		"FROM Flight F JOIN Schedule S ON S.flightNum = F.fnum" +
+		" LEFT JOIN FlightInfo FI ON FI.flight_id = F.fnum LEFT JOIN Plane P ON P.id = FI.plane_id";
+	// the legs of the given flights, as an array literal like {1,2,3}
+	public static final String ROUTE_LEGS_IN =
+		ROUTE_LEGS + " WHERE F.fnum = ANY (CAST(? AS INTEGER[]))";
+
+	//================================= Reservation ===============================
+	public static final String RESERVATION_BY_CUSTOMER_AND_FLIGHT =
+		"SELECT * FROM Reservation R WHERE R.cid = ? AND R.fid = ?";
+	/*
+	 * Books a seat for a customer without a reservation on the flight in one
+	 * statement: the seat is taken by incrementing num_sold only while it is
+	 * below the plane's seats (the row lock on Flight serializes concurrent
+	 * bookings), and the reservation gets the requested status if a seat was
+	 * taken and W otherwise.  Returns the status and the new num_sold (null if
+	 * no seat was taken), or no row if the customer already has a reservation
+	 * on the flight.  A concurrent booking of the same customer and flight
+	 * makes it fail with 23505 instead (trigger reservation_unique).
+	 * Parameters: cid, fnum, fnum, status, rnum, cid, fnum, status
+	 */
+	public static final String BOOK_NEW_RESERVATION =
+		"WITH fresh AS (" +
+		"  SELECT 1 WHERE NOT EXISTS (SELECT 1 FROM Reservation R WHERE R.cid = ? AND R.fid = ?)), " +
+		"seat AS (" +
+		"  UPDATE Flight F SET num_sold = F.num_sold + 1 FROM FlightInfo FI, Plane P" +
+		"  WHERE F.fnum = ? AND FI.flight_id = F.fnum AND P.id = FI.plane_id AND F.num_sold < P.seats" +
+		"  AND CAST(? AS CHAR(1)) <> 'W' AND EXISTS (SELECT 1 FROM fresh)" +
+		"  RETURNING F.fnum, F.num_sold) " +
+		"INSERT INTO Reservation (rnum, cid, fid, status) " +
+		"SELECT ?, ?, ?, CASE WHEN EXISTS (SELECT 1 FROM seat) THEN CAST(? AS CHAR(1)) ELSE 'W' END FROM fresh " +
+		"RETURNING status, (SELECT S.num_sold FROM seat S) AS num_sold";
+	/*
+	 * Moves a waitlisted reservation to the requested status if a seat can be
+	 * taken on its flight.  The reservation row is locked first so that two
+	 * concurrent promotions of it cannot both take a seat.  Returns the status
+	 * and the new num_sold, or no row if the flight is full or the reservation
+	 * is no longer waitlisted.
+	 * Parameters: rnum, fnum, status, rnum
+	 */
+	public static final String PROMOTE_WAITLISTED =
+		"WITH waiting AS (" +
+		"  SELECT R.rnum FROM Reservation R WHERE R.rnum = ? AND R.status = 'W' FOR UPDATE), " +
+		"seat AS (" +
+		"  UPDATE Flight F SET num_sold = F.num_sold + 1 FROM FlightInfo FI, Plane P" +
+		"  WHERE F.fnum = ? AND FI.flight_id = F.fnum AND P.id = FI.plane_id AND F.num_sold < P.seats" +
+		"  AND EXISTS (SELECT 1 FROM waiting)" +
+		"  RETURNING F.fnum, F.num_sold) " +
+		"UPDATE Reservation R SET status = CAST(? AS CHAR(1)) " +
+		"WHERE R.rnum = ? AND EXISTS (SELECT 1 FROM seat) " +
+		"RETURNING R.status, (SELECT S.num_sold FROM seat S) AS num_sold";
+	// Parameters: rnum
+	public static final String CONFIRM_RESERVED =
+		"UPDATE Reservation SET status = 'C' WHERE rnum = ? AND status = 'R' RETURNING status";
+	/*
+	 * Cancels the customer's reservations on a flight and gives their seats
+	 * back, one per reservation that was not waitlisted (the loaded data has
+	 * customers with several reservations on a flight).  Returns each
+	 * reservation, its flight, the status it had and the new num_sold, or no
+	 * row if there was none.
+	 * Parameters: cid, fnum, fnum
+	 */
+	public static final String CANCEL_RESERVATION =
+		"WITH gone AS (" +
+		"  DELETE FROM Reservation R WHERE R.cid = ? AND R.fid = ? RETURNING R.rnum, R.fid, R.status), " +
+		"seat AS (" +
+		"  UPDATE Flight F SET num_sold = GREATEST(F.num_sold - (SELECT COUNT(*) FROM gone G WHERE G.status <> 'W'), 0)" +
+		"  WHERE F.fnum = ? AND EXISTS (SELECT 1 FROM gone G WHERE G.status <> 'W')" +
+		"  RETURNING F.num_sold) " +
+		"SELECT G.rnum, G.fid, G.status, (SELECT S.num_sold FROM seat S) AS num_sold FROM gone G";
+	/*
+	 * Promotes the oldest waitlisted reservations of a flight to the given
+	 * status, as many as there are open seats, and takes their seats.  The
+	 * flight row is locked first so that bookings and other promotions of the
+	 * flight wait, and reservations locked by a concurrent BookFlight are
+	 * skipped.  Returns the number promoted and the new num_sold (null if
+	 * none was promoted).
+	 * Parameters: fnum, status, fnum
+	 */
+	public static final String PROMOTE_WAITLIST =
+		"WITH flight AS (" +
+		"  SELECT F.fnum, P.seats - F.num_sold AS free FROM Flight F, FlightInfo FI, Plane P" +
+		"  WHERE F.fnum = ? AND FI.flight_id = F.fnum AND P.id = FI.plane_id FOR UPDATE OF F), " +
+		"waiting AS (" +
+		"  SELECT R.rnum FROM Reservation R WHERE R.fid = (SELECT FL.fnum FROM flight FL) AND R.status = 'W'" +
+		"  ORDER BY R.booked_at, R.rnum LIMIT COALESCE((SELECT GREATEST(FL.free, 0) FROM flight FL), 0)" +
+		"  FOR UPDATE SKIP LOCKED), " +
+		"promoted AS (" +
+		"  UPDATE Reservation R SET status = CAST(? AS CHAR(1)) FROM waiting W WHERE R.rnum = W.rnum RETURNING R.rnum), " +
+		"seat AS (" +
+		"  UPDATE Flight F SET num_sold = F.num_sold + (SELECT COUNT(*) FROM promoted)" +
+		"  WHERE F.fnum = ? AND EXISTS (SELECT 1 FROM promoted) RETURNING F.num_sold) " +
+		"SELECT (SELECT COUNT(*) FROM promoted) AS promoted, (SELECT S.num_sold FROM seat S) AS num_sold";
+	// flights with at least one waitlisted reservation
+	public static final String WAITLISTED_FLIGHTS =
+		"SELECT DISTINCT R.fid FROM Reservation R WHERE R.status = 'W'";
+	// Reservation.cid references Customer, so the count needs no join
+	public static final String PASSENGERS_WITH_STATUS =
+		"SELECT COUNT(*) as NumberOfPassengers FROM Reservation R WHERE R.status = ? AND R.fid = ?";
+	// reservations of each flight by status, for the exported reports
+	public static final String PASSENGERS_BY_STATUS =
+		"SELECT R.fid, COUNT(*) FILTER (WHERE R.status = 'C') AS confirmed, COUNT(*) FILTER (WHERE R.status = 'R') AS reserved," +
+		" COUNT(*) FILTER (WHERE R.status = 'W') AS waitlisted FROM Reservation R GROUP BY R.fid ORDER BY R.fid";
+	public static final String RESERVATIONS_BY_FLIGHT =
+		"SELECT R.fid, R.rnum, R.cid, R.status, R.booked_at FROM Reservation R ORDER BY R.fid, R.booked_at, R.rnum";
+	// every reservation, streamed into the ReservationIndex
+	public static final String RESERVATION_INDEX =
+		"SELECT R.rnum, R.cid, R.fid, R.status FROM Reservation R";
+
+	//================================== Replicas =================================
+	/*
+	 * Replay lag of a streaming replica in milliseconds: 0 when it has
+	 * replayed everything received from a connected primary (or is not a
+	 * replica), else the age of the last replayed commit, -1 if unknown.
+	 * The lag is only a freshness bound; read-your-writes compares the WAL
+	 * position replayed with the one of the primary after the write.
+	 */
+	public static final String REPLICA_LAG =
+		"SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+		"WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn()" +
+		"  AND EXISTS (SELECT 1 FROM pg_stat_wal_receiver W WHERE W.status = 'streaming') THEN 0 " +
+		"ELSE COALESCE(CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS BIGINT), -1) END AS lag_millis, " +
+		"CAST(COALESCE(CASE WHEN pg_is_in_recovery() THEN pg_last_wal_replay_lsn() ELSE pg_current_wal_lsn() END, '0/0') - '0/0' AS BIGINT) AS replay_lsn";
+	// WAL position of the primary, as a byte offset, after a write of this client
+	public static final String CURRENT_WAL_LSN =
+		"SELECT CAST(pg_current_wal_lsn() - '0/0' AS BIGINT) AS lsn";
+
+	//================================= Id blocks =================================
+	// Parameters: sequence name
+	public static final String NEXT_ID_BLOCK =
+		"SELECT nextval(CAST(? AS regclass))";
+
+	//=================================== Repairs =================================
+	// read the counts kept by the count_repairs trigger, not Repairs itself
+	public static final String REPAIRS_PER_PLANE =
+		"SELECT P.id as ID, P.make as Make, P.model as Model, RP.num_repairs as NumOfRepairs FROM Plane P, RepairsPerPlane RP WHERE P.id = RP.plane_id AND RP.num_repairs > 0 ORDER BY NumOfRepairs DESC";
+	public static final String REPAIRS_PER_YEAR =
+		"SELECT RY.year as Year, RY.num_repairs AS NumRepairsPerYear FROM RepairsPerYear RY WHERE RY.num_repairs > 0 ORDER BY RY.num_repairs ASC";
+}
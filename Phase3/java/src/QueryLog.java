@@ -0,0 +1,279 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class aggregates the statements run by DBproject by fingerprint: the
+ * statement text with its literals replaced by '?', comments removed and
+ * whitespace collapsed, so statements built with different literal values
+ * count as one shape.  Count, total and maximum time are kept per
+ * fingerprint without locking.  A statement slower than the threshold is
+ * written with its bind values to a slow query log that rotates by size.
+ *
+ * Settings: dbproject.slowQuery.thresholdMillis (200, negative to disable),
+ * dbproject.slowQuery.file (slow-query.%g.log, a FileHandler pattern),
+ * dbproject.slowQuery.maxBytes (10 MB per file) and dbproject.slowQuery.files
+ * (5 files).
+ *
+ */
+
+public class QueryLog{
+	// statement texts whose fingerprints are remembered
+	private static final int MAX_CACHED = 10000;
+	// longest bind value written to the log
+	private static final int MAX_VALUE_LENGTH = 200;
+	private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN \\(\\?(?: ?, ?\\?)+\\)");
+
+	/**
+	 * The totals of one statement shape.
+	 */
+	public static final class Stats{
+		private final String _fingerprint;
+		private final LongAdder _count = new LongAdder();
+		private final LongAdder _totalNanos = new LongAdder();
+		private final AtomicLong _maxNanos = new AtomicLong();
+
+		Stats(String fingerprint){
+			this._fingerprint = fingerprint;
+		}
+
+		void record(long nanos){
+			this._count.increment();
+			this._totalNanos.add(nanos);
+			this._maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+
+		public String getFingerprint(){
+			return this._fingerprint;
+		}
+
+		public long getCount(){
+			return this._count.sum();
+		}
+
+		public long getTotalNanos(){
+			return this._totalNanos.sum();
+		}
+
+		public long getMaxNanos(){
+			return this._maxNanos.get();
+		}
+	}
+
+	private final ConcurrentHashMap<String, String> _fingerprints = new ConcurrentHashMap<String, String>();
+	private final ConcurrentHashMap<String, Stats> _stats = new ConcurrentHashMap<String, Stats>();
+	private final long _thresholdNanos;
+	private final String _file;
+	private final int _maxBytes;
+	private final int _files;
+	// opened on the first slow statement
+	private volatile FileHandler _log = null;
+	private volatile boolean _unwritable = false;
+	private final LongAdder _slow = new LongAdder();
+
+	public QueryLog(long thresholdMillis, String file, int maxBytes, int files){
+		this._thresholdNanos = thresholdMillis < 0 ? Long.MAX_VALUE : thresholdMillis * 1000000L;
+		this._file = file;
+		this._maxBytes = maxBytes;
+		this._files = files;
+	}
+
+	/**
+	 * Counts one execution of the statement and logs it when it was slow.
+	 */
+	public void record(String sql, Object[] params, long nanos){
+		String fingerprint = fingerprintOf(sql);
+		Stats stats = this._stats.get(fingerprint);
+		if (stats == null){
+			stats = this._stats.computeIfAbsent(fingerprint, Stats::new);
+		}
+		stats.record(nanos);
+		if (nanos >= this._thresholdNanos && !this._unwritable){
+			this._slow.increment();
+			logSlow(fingerprint, sql, params, nanos);
+		}
+	}
+
+	public long getSlowCount(){
+		return this._slow.sum();
+	}
+
+	/**
+	 * Returns the totals of every statement shape, by total time descending.
+	 */
+	public List<Stats> getStats(){
+		List<Stats> stats = new ArrayList<Stats>(this._stats.values());
+		stats.sort(Comparator.comparingLong(Stats::getTotalNanos).reversed());
+		return stats;
+	}
+
+	/**
+	 * Returns a table of the statement shapes that took the most total time.
+	 */
+	public String report(int limit){
+		StringBuilder sb = new StringBuilder(String.format("%10s %12s %10s %10s  %s%n", "calls", "total (ms)", "mean (ms)", "max (ms)", "statement"));
+		List<Stats> stats = getStats();
+		for (int i = 0; i < Math.min(limit, stats.size()); i++){
+			Stats s = stats.get(i);
+			sb.append(String.format("%10d %12.1f %10.3f %10.3f  %s%n", s.getCount(), s.getTotalNanos() / 1e6,
+				s.getTotalNanos() / 1e6 / Math.max(1, s.getCount()), s.getMaxNanos() / 1e6, s.getFingerprint()));
+		}
+		return sb.toString();
+	}
+
+	public synchronized void close(){
+		if (this._log != null){
+			this._log.close();
+			this._log = null;
+		}
+	}
+
+	private String fingerprintOf(String sql){
+		String fingerprint = this._fingerprints.get(sql);
+		if (fingerprint == null){
+			fingerprint = fingerprint(sql);
+			// statements built from literals could grow this without bound
+			if (this._fingerprints.size() < MAX_CACHED){
+				this._fingerprints.put(sql, fingerprint);
+			}
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Replaces string and numeric literals with '?', drops comments and
+	 * collapses whitespace, and shortens IN lists to a single '?'.
+	 */
+	static String fingerprint(String sql){
+		StringBuilder sb = new StringBuilder(sql.length());
+		int n = sql.length();
+		int i = 0;
+		while (i < n){
+			char c = sql.charAt(i);
+			if (c == '\''){
+				// string literal, quotes escaped by doubling
+				i++;
+				while (i < n){
+					if (sql.charAt(i) == '\''){
+						if (i + 1 < n && sql.charAt(i + 1) == '\''){
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				i++;
+				sb.append('?');
+			}
+			else if (c == '"'){
+				// quoted identifier, kept as is
+				int end = sql.indexOf('"', i + 1);
+				end = end < 0 ? n : end + 1;
+				sb.append(sql, i, end);
+				i = end;
+			}
+			else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-'){
+				int end = sql.indexOf('\n', i);
+				i = end < 0 ? n : end;
+			}
+			else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*'){
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? n : end + 2;
+			}
+			else if (Character.isWhitespace(c)){
+				while (i < n && Character.isWhitespace(sql.charAt(i))){
+					i++;
+				}
+				if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' '){
+					sb.append(' ');
+				}
+			}
+			else if (Character.isDigit(c) && !inIdentifier(sb)){
+				while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')){
+					i++;
+				}
+				sb.append('?');
+			}
+			else {
+				sb.append(c);
+				i++;
+			}
+		}//end while
+		return IN_LIST.matcher(sb.toString().trim()).replaceAll("IN (?)");
+	}
+
+	private static boolean inIdentifier(StringBuilder sb){
+		if (sb.length() == 0){
+			return false;
+		}
+		char last = sb.charAt(sb.length() - 1);
+		return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+	}
+
+	private void logSlow(String fingerprint, String sql, Object[] params, long nanos){
+		FileHandler log = this._log;
+		if (log == null){
+			log = open();
+			if (log == null){
+				return;
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(Instant.now()).append(String.format(" %.3f ms", nanos / 1e6)).append('\n');
+		sb.append("  fingerprint: ").append(fingerprint).append('\n');
+		sb.append("  statement: ").append(sql.trim().replaceAll("\\s+", " ")).append('\n');
+		if (params != null && params.length > 0){
+			Object[] values = new Object[params.length];
+			for (int i = 0; i < params.length; i++){
+				String value = String.valueOf(params[i]);
+				values[i] = value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH) + "..." : value;
+			}
+			sb.append("  values: ").append(Arrays.toString(values)).append('\n');
+		}
+		log.publish(new LogRecord(Level.WARNING, sb.toString()));
+		log.flush();
+	}
+
+	private synchronized FileHandler open(){
+		if (this._log == null){
+			try{
+				FileHandler log = new FileHandler(this._file, this._maxBytes, this._files, true);
+				log.setFormatter(new Formatter(){
+					public String format(LogRecord record){
+						return record.getMessage();
+					}
+				});
+				this._log = log;
+			}catch (IOException e){
+				System.err.println("Unable to open the slow query log " + this._file + ": " + e.getMessage());
+				this._unwritable = true;
+			}
+		}
+		return this._log;
+	}
+}
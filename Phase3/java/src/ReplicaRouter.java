@@ -0,0 +1,279 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * This class picks the streaming replica that serves a read-only query.
+ * Each replica has its own connection pool, so reports run on a replica do
+ * not take connections from the bookings on the primary.
+ *
+ * Every dbproject.replicas.lagCheckMillis (1000) the replay lag of each
+ * replica is measured.  A replica is used only when
+ *
+ *   - its last check succeeded,
+ *   - its lag is at most dbproject.replicas.maxLagMillis (5000), and
+ *   - it has replayed the WAL up to the position of the primary after the
+ *     last write this client made to what the query reads (read-your-writes),
+ *     e.g. the last booking of a flight.
+ *
+ * Among the replicas left one is chosen round robin or by lowest recent
+ * latency (dbproject.replicas.select).  When none is left the query runs
+ * on the primary.  A replica that fails with a connection error is not
+ * used again until its next successful check; a replica that is down is
+ * checked less and less often, down to once a minute.
+ *
+ */
+
+public class ReplicaRouter{
+
+	public enum Selection{
+		ROUND_ROBIN, LEAST_LATENCY;
+
+		public static Selection parse(String name){
+			switch (name.trim().toLowerCase()){
+				case "roundrobin":
+				case "round_robin":
+					return ROUND_ROBIN;
+				case "leastlatency":
+				case "least_latency":
+					return LEAST_LATENCY;
+				default:
+					throw new IllegalArgumentException("Unknown replica selection: " + name);
+			}
+		}
+	}
+
+	/**
+	 * One replica and what is known of it.
+	 */
+	public static final class Replica{
+		private final String _url;
+		private final ConnectionPool _pool;
+		// WAL position the replica has replayed up to, -1 when unknown
+		private volatile long _replayedLsn = -1;
+		private volatile long _lagMillis = -1;
+		// moving average of the query time
+		private volatile double _latencyNanos = 0;
+		private final LongAdder _reads = new LongAdder();
+		// a replica that is down is checked less and less often, up to once a minute
+		private int _failedChecks = 0;
+		private long _nextCheck = 0;
+
+		Replica(String url, ConnectionPool pool){
+			this._url = url;
+			this._pool = pool;
+		}
+
+		public String getUrl(){
+			return this._url;
+		}
+
+		public ConnectionPool getPool(){
+			return this._pool;
+		}
+
+		// -1 when the last check failed
+		public long getLagMillis(){
+			return this._lagMillis;
+		}
+
+		public double getLatencyMillis(){
+			return this._latencyNanos / 1e6;
+		}
+
+		public long getReads(){
+			return this._reads.sum();
+		}
+	}
+
+	private final List<Replica> _replicas = new ArrayList<Replica>();
+	private final long _maxLagMillis;
+	private final Selection _selection;
+	private final AtomicInteger _next = new AtomicInteger();
+	// WAL position of the primary after the last write of this client, by what it wrote
+	private final Map<Object, Long> _writes = new ConcurrentHashMap<Object, Long>();
+	private final LongAdder _primaryReads = new LongAdder();
+	private final ScheduledExecutorService _checker;
+
+	/**
+	 * @param urls the JDBC URLs of the replicas
+	 * @param pools the connection pool of each replica, in the same order
+	 */
+	public ReplicaRouter(List<String> urls, List<ConnectionPool> pools, long maxLagMillis, long lagCheckMillis, Selection selection){
+		for (int i = 0; i < urls.size(); i++){
+			this._replicas.add(new Replica(urls.get(i), pools.get(i)));
+		}
+		this._maxLagMillis = maxLagMillis;
+		this._selection = selection;
+		this._checker = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "replica-lag");
+			t.setDaemon(true);
+			return t;
+		});
+		this._checker.scheduleWithFixedDelay(() -> check(lagCheckMillis), 0, lagCheckMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the replica to read from, or null to read from the primary.
+	 *
+	 * @param key what the query reads, e.g. a flight number; null when it
+	 *        reads nothing this client writes
+	 */
+	public Replica choose(Object key){
+		Long written = key == null ? null : this._writes.get(key);
+		long after = written == null ? 0 : written;
+		int count = this._replicas.size();
+		int start = this._selection == Selection.ROUND_ROBIN ? Math.floorMod(this._next.getAndIncrement(), count) : 0;
+		Replica chosen = null;
+		for (int i = 0; i < count; i++){
+			Replica replica = this._replicas.get((start + i) % count);
+			if (replica._replayedLsn < 0 || replica._lagMillis < 0 || replica._lagMillis > this._maxLagMillis || replica._replayedLsn < after){
+				continue;
+			}
+			if (this._selection == Selection.ROUND_ROBIN){
+				chosen = replica;
+				break;
+			}
+			if (chosen == null || replica._latencyNanos < chosen._latencyNanos){
+				chosen = replica;
+			}
+		}//end for
+		if (chosen == null){
+			this._primaryReads.increment();
+		}
+		else {
+			chosen._reads.increment();
+		}
+		return chosen;
+	}
+
+	/**
+	 * Records a write of this client, so that reads of the same key stay on
+	 * the primary until a replica has replayed it.
+	 *
+	 * @param lsn the WAL position of the primary after the write,
+	 *        Long.MAX_VALUE when unknown, which keeps the key on the primary
+	 *        until its next write
+	 */
+	public void wrote(Object key, long lsn){
+		// a later write's position also covers an earlier write of unknown position
+		this._writes.merge(key, lsn, (old, next) -> old == Long.MAX_VALUE ? next : Math.max(old, next));
+	}
+
+	/**
+	 * Records the time a query took on the replica.
+	 */
+	public void completed(Replica replica, long nanos){
+		double latency = replica._latencyNanos;
+		replica._latencyNanos = latency == 0 ? nanos : latency * 0.8 + nanos * 0.2;
+	}
+
+	/**
+	 * Stops using the replica until its next successful check.
+	 */
+	public void failed(Replica replica){
+		replica._replayedLsn = -1;
+		replica._lagMillis = -1;
+	}
+
+	public List<Replica> getReplicas(){
+		return this._replicas;
+	}
+
+	public long getPrimaryReads(){
+		return this._primaryReads.sum();
+	}
+
+	public String stats(){
+		StringBuilder sb = new StringBuilder(String.format("Reads on the primary: %d", getPrimaryReads()));
+		for (Replica replica : this._replicas){
+			sb.append(String.format("%n%s: reads %d, lag %d ms, latency %.2f ms", replica._url,
+				replica.getReads(), replica._lagMillis, replica.getLatencyMillis()));
+		}
+		return sb.toString();
+	}
+
+	public void close(){
+		this._checker.shutdownNow();
+		for (Replica replica : this._replicas){
+			replica._pool.close();
+		}
+	}
+
+	//=========================================================================================================================================================================
+
+	private void check(long lagCheckMillis){
+		for (Replica replica : this._replicas){
+			long checkedAt = System.currentTimeMillis();
+			if (checkedAt < replica._nextCheck){
+				continue;
+			}
+			try{
+				check(replica);
+				replica._failedChecks = 0;
+			}catch (SQLException e){
+				failed(replica);
+				replica._failedChecks = Math.min(replica._failedChecks + 1, 6);
+				replica._nextCheck = checkedAt + Math.min(lagCheckMillis << replica._failedChecks, 60000);
+			}
+		}//end for
+		// writes every replica has replayed no longer hold reads on the primary; a
+		// replica that is down may come back behind, so nothing is dropped meanwhile
+		long replayed = Long.MAX_VALUE;
+		for (Replica replica : this._replicas){
+			replayed = Math.min(replayed, replica._replayedLsn);
+		}
+		for (Map.Entry<Object, Long> write : this._writes.entrySet()){
+			// only if no newer write of the key came in meanwhile
+			if (write.getValue() <= replayed){
+				this._writes.remove(write.getKey(), write.getValue());
+			}
+		}//end for
+	}
+
+	// reads the replay lag in milliseconds (-1 when unknown) and the replayed WAL position
+	private static void check(Replica replica) throws SQLException {
+		ConnectionPool.PooledConnection pc = replica._pool.checkout();
+		boolean broken = false;
+		try{
+			PreparedStatement stmt = pc.getStatements().prepare(Queries.REPLICA_LAG);
+			ResultSet rs = stmt.executeQuery();
+			if (rs.next()){
+				replica._lagMillis = rs.getLong(1);
+				replica._replayedLsn = rs.getLong(2);
+			}
+			else {
+				replica._lagMillis = -1;
+				replica._replayedLsn = -1;
+			}
+			rs.close();
+		}catch (SQLException e){
+			broken = true;
+			throw e;
+		}finally{
+			replica._pool.checkin(pc, broken);
+		}
+	}
+}
@@ -0,0 +1,422 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+/**
+ * This class writes reports and whole tables to files, one file per report.
+ * Each report is read through a cursor, dbproject.fetchSize rows at a time,
+ * and its rows are encoded into a direct buffer that is written to a
+ * FileChannel when full, optionally gzip compressed on the way, so a report
+ * of any size is exported in constant memory.  Reports are exported in
+ * parallel on dbproject.export.threads (4) connections, on a replica when
+ * there is one.  A file is written under a .part name and renamed when
+ * complete, so a finished extract is never seen half written.
+ *
+ *   java ReportExport <dbname> <port> <user> <directory> [report ...]
+ *
+ * Settings: dbproject.export.format (csv, tsv or fixed) and
+ * dbproject.export.compress (none or gzip).
+ *
+ */
+
+public class ReportExport{
+	// bytes of the direct buffers of each export
+	static final int BUFFER_SIZE = Integer.getInteger("dbproject.export.bufferSize", 1 << 20);
+	// report name to query, reports first and then the table dumps
+	static final Map<String, String> REPORTS = new LinkedHashMap<String, String>();
+	static{
+		REPORTS.put("repairs_per_plane", Queries.REPAIRS_PER_PLANE);
+		REPORTS.put("repairs_per_year", Queries.REPAIRS_PER_YEAR);
+		REPORTS.put("passengers_by_status", Queries.PASSENGERS_BY_STATUS);
+		REPORTS.put("reservations_by_flight", Queries.RESERVATIONS_BY_FLIGHT);
+		for (String table : Arrays.asList("Customer", "Pilot", "Flight", "Plane", "Technician",
+				"Reservation", "FlightInfo", "Repairs", "Schedule")){
+			REPORTS.put(table.toLowerCase(), "SELECT * FROM " + table);
+		}
+	}
+
+	public enum Compression{
+		NONE(""), GZIP(".gz");
+
+		private final String _suffix;
+
+		Compression(String suffix){
+			this._suffix = suffix;
+		}
+
+		public static Compression parse(String name){
+			switch (name.trim().toLowerCase()){
+				case "":
+				case "none":
+					return NONE;
+				case "gzip":
+				case "gz":
+					return GZIP;
+				default:
+					throw new IllegalArgumentException("compression must be none or gzip");
+			}
+		}
+	}
+
+	/**
+	 * The file written for one report.
+	 */
+	public static final class Result{
+		private final String _report;
+		private final Path _file;
+		private final int _rows;
+		private final long _bytes;
+		private final long _nanos;
+
+		Result(String report, Path file, int rows, long bytes, long nanos){
+			this._report = report;
+			this._file = file;
+			this._rows = rows;
+			this._bytes = bytes;
+			this._nanos = nanos;
+		}
+
+		public String getReport(){
+			return this._report;
+		}
+
+		public Path getFile(){
+			return this._file;
+		}
+
+		public int getRows(){
+			return this._rows;
+		}
+
+		// bytes in the file, after compression
+		public long getBytes(){
+			return this._bytes;
+		}
+
+		public String toString(){
+			return String.format("%s: %d rows, %d bytes in %.1f s -> %s", this._report, this._rows, this._bytes, this._nanos / 1e9, this._file);
+		}
+	}
+
+	private final DBproject _esql;
+	private final ResultPrinter.Format _format;
+	private final Compression _compression;
+	private final int _threads;
+
+	public ReportExport(DBproject esql, ResultPrinter.Format format, Compression compression, int threads){
+		this._esql = esql;
+		this._format = format;
+		this._compression = compression;
+		this._threads = threads;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 4){
+			System.err.println("Usage: java [-classpath <classpath>] " + ReportExport.class.getName() +
+				" <dbname> <port> <user> <directory> [report ...]");
+			System.err.println("Reports: " + String.join(" ", REPORTS.keySet()));
+			return;
+		}
+		Class.forName("org.postgresql.Driver");
+		DBproject esql = new DBproject(args[0], args[1], args[2], "");
+		try{
+			long start = System.nanoTime();
+			List<String> reports = args.length > 4 ? Arrays.asList(args).subList(4, args.length) : new ArrayList<String>(REPORTS.keySet());
+			ReportExport export = new ReportExport(esql,
+				ResultPrinter.Format.parse(System.getProperty("dbproject.export.format", "csv")),
+				Compression.parse(System.getProperty("dbproject.export.compress", "none")),
+				Integer.getInteger("dbproject.export.threads", 4));
+			for (Result result : export.run(Paths.get(args[3]), reports)){
+				System.out.println(result);
+			}
+			System.out.println(String.format("Exported %d reports in %.1f s", reports.size(), (System.nanoTime() - start) / 1e9));
+		}finally{
+			esql.cleanup();
+		}
+	}
+
+	/**
+	 * Exports the reports into the directory, several at a time.
+	 *
+	 * @param reports names of REPORTS
+	 * @return the file of each report, in the order given
+	 * @throws java.sql.SQLException when a report query failed; the other reports are still exported
+	 * @throws java.io.IOException when a file could not be written
+	 */
+	public List<Result> run(Path directory, List<String> reports) throws SQLException, IOException {
+		for (String report : reports){
+			if (!REPORTS.containsKey(report)){
+				throw new IllegalArgumentException("unknown report " + report + "; reports are " + String.join(", ", REPORTS.keySet()));
+			}
+		}
+		Files.createDirectories(directory);
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(this._threads, reports.size())), r -> {
+			Thread t = new Thread(r, "export");
+			t.setDaemon(true);
+			return t;
+		});
+		try{
+			List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			for (String report : reports){
+				futures.add(pool.submit(() -> export(directory, report)));
+			}
+			List<Result> results = new ArrayList<Result>();
+			Throwable failure = null;
+			for (Future<Result> future : futures){
+				try{
+					results.add(future.get());
+				}catch (ExecutionException e){
+					if (failure == null){
+						failure = e.getCause();
+					}
+				}catch (InterruptedException e){
+					Thread.currentThread().interrupt();
+					throw new IOException("Export interrupted");
+				}
+			}//end for
+			if (failure instanceof SQLException){
+				throw (SQLException) failure;
+			}
+			if (failure instanceof IOException){
+				throw (IOException) failure;
+			}
+			if (failure instanceof RuntimeException){
+				throw (RuntimeException) failure;
+			}
+			if (failure != null){
+				throw (Error) failure;
+			}
+			return results;
+		}finally{
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Exports one report into the directory.
+	 */
+	public Result export(Path directory, String report) throws SQLException, IOException {
+		long start = System.nanoTime();
+		String extension = this._format == ResultPrinter.Format.CSV ? ".csv" : this._format == ResultPrinter.Format.TSV ? ".tsv" : ".txt";
+		Path file = directory.resolve(report + extension + this._compression._suffix);
+		Path part = directory.resolve(file.getFileName() + ".part");
+		int rows;
+		long bytes;
+		try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			WritableByteChannel target = this._compression == Compression.GZIP ? new GzipChannel(channel, BUFFER_SIZE) : channel;
+			ChannelWriter writer = new ChannelWriter(target, BUFFER_SIZE);
+			rows = this._esql.readOnly(null, () -> this._esql.executeQueryAndPrintResult(writer, this._format, true, REPORTS.get(report)));
+			writer.close();
+			bytes = Files.size(part);
+		}catch (SQLException | IOException | RuntimeException e){
+			Files.deleteIfExists(part);
+			throw e;
+		}
+		Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return new Result(report, file, rows, bytes, System.nanoTime() - start);
+	}
+
+	//=========================================================================================================================================================================
+
+	/**
+	 * A writer that encodes characters as UTF-8 into a direct buffer and
+	 * writes the buffer to a channel each time it fills up.
+	 */
+	static final class ChannelWriter extends Writer{
+		private final WritableByteChannel _channel;
+		private final CharsetEncoder _encoder = StandardCharsets.UTF_8.newEncoder();
+		private final CharBuffer _chars = CharBuffer.allocate(8192);
+		private final ByteBuffer _bytes;
+
+		ChannelWriter(WritableByteChannel channel, int bufferSize){
+			this._channel = channel;
+			this._bytes = ByteBuffer.allocateDirect(bufferSize);
+		}
+
+		public void write(int c) throws IOException {
+			if (!this._chars.hasRemaining()){
+				encode(false);
+			}
+			this._chars.put((char) c);
+		}
+
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			while (len > 0){
+				if (!this._chars.hasRemaining()){
+					encode(false);
+				}
+				int n = Math.min(len, this._chars.remaining());
+				this._chars.put(cbuf, off, n);
+				off += n;
+				len -= n;
+			}
+		}
+
+		public void write(String str, int off, int len) throws IOException {
+			while (len > 0){
+				if (!this._chars.hasRemaining()){
+					encode(false);
+				}
+				int n = Math.min(len, this._chars.remaining());
+				this._chars.put(str, off, off + n);
+				off += n;
+				len -= n;
+			}
+		}
+
+		public void flush() throws IOException {
+			encode(false);
+			drain();
+		}
+
+		public void close() throws IOException {
+			if (!this._channel.isOpen()){
+				return;
+			}
+			encode(true);
+			while (this._encoder.flush(this._bytes).isOverflow()){
+				drain();
+			}
+			drain();
+			this._channel.close();
+		}
+
+		// moves the characters written so far into the byte buffer
+		private void encode(boolean endOfInput) throws IOException {
+			this._chars.flip();
+			while (true){
+				CoderResult result = this._encoder.encode(this._chars, this._bytes, endOfInput);
+				if (result.isOverflow()){
+					drain();
+				}
+				else if (result.isError()){
+					result.throwException();
+				}
+				else {
+					break;
+				}
+			}
+			// keeps half of a surrogate pair for the next call
+			this._chars.compact();
+		}
+
+		private void drain() throws IOException {
+			this._bytes.flip();
+			while (this._bytes.hasRemaining()){
+				this._channel.write(this._bytes);
+			}
+			this._bytes.clear();
+		}
+	}
+
+	/**
+	 * A channel that gzip compresses what is written to it into another
+	 * channel, deflating straight from and into direct buffers.
+	 */
+	static final class GzipChannel implements WritableByteChannel{
+		private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+		private static final byte[] EMPTY = new byte[0];
+		private final WritableByteChannel _out;
+		private final Deflater _deflater = new Deflater(Integer.getInteger("dbproject.export.gzipLevel", 6), true);
+		private final CRC32 _crc = new CRC32();
+		private final ByteBuffer _buffer;
+		private long _size = 0;
+		private boolean _open = true;
+
+		GzipChannel(WritableByteChannel out, int bufferSize) throws IOException {
+			this._out = out;
+			this._buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+			this._buffer.put(HEADER);
+		}
+
+		public int write(ByteBuffer src) throws IOException {
+			int n = src.remaining();
+			this._crc.update(src.duplicate());
+			this._deflater.setInput(src);
+			while (!this._deflater.needsInput()){
+				if (!this._buffer.hasRemaining()){
+					drain();
+				}
+				this._deflater.deflate(this._buffer);
+			}
+			// the deflater reads the buffer in place, so it must let go of it before the caller reuses it
+			this._deflater.setInput(EMPTY);
+			this._size += n;
+			return n;
+		}
+
+		public boolean isOpen(){
+			return this._open;
+		}
+
+		public void close() throws IOException {
+			if (!this._open){
+				return;
+			}
+			this._open = false;
+			try{
+				this._deflater.finish();
+				while (!this._deflater.finished()){
+					if (!this._buffer.hasRemaining()){
+						drain();
+					}
+					this._deflater.deflate(this._buffer);
+				}
+				if (this._buffer.remaining() < 8){
+					drain();
+				}
+				this._buffer.putInt((int) this._crc.getValue());
+				this._buffer.putInt((int) this._size);
+				drain();
+			}finally{
+				this._deflater.end();
+				this._out.close();
+			}
+		}
+
+		private void drain() throws IOException {
+			this._buffer.flip();
+			while (this._buffer.hasRemaining()){
+				this._out.write(this._buffer);
+			}
+			this._buffer.clear();
+		}
+	}
+}
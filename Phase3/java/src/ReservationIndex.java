@@ -0,0 +1,605 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * This class keeps every reservation in memory in primitive arrays, one
+ * slot per reservation holding its rnum, cid, fid and status, and answers
+ * the number of reservations of a flight with a status and whether a
+ * customer holds a reservation on a flight without a query.  Next to the
+ * slots it keeps
+ *
+ *   - a counter per flight and status,
+ *   - the slot of each rnum, and
+ *   - the number of reservations of each (cid, fid) pair,
+ *
+ * in open addressing hash tables of int and long keys, so nothing is boxed
+ * and a lookup is a few array reads.  getBytes() tells the memory used.
+ *
+ * The index is loaded from Reservation on first use.  BookFlight and
+ * CancelReservation write their reservation through to it unless a change
+ * was notified while they ran, since the notified status may be newer, and the
+ * reservations notifications sent by the trigger in constraints.sql bring
+ * in the changes of other clients and of bulk updates such as waitlist
+ * promotions.  Changes notified while loading are applied once the load is
+ * done.  After the listener reconnects the index is loaded again.
+ *
+ */
+
+public class ReservationIndex implements NotifyListener.Handler{
+	public static final String CHANNEL = "reservations";
+	// status codes are positions in this string; other statuses are kept but not counted
+	static final String STATUSES = "CRW";
+	private static final int REMOVED = -2;
+
+	/**
+	 * An open addressing table of int keys to non-negative int values.
+	 */
+	static final class IntIntMap{
+		private static final int EMPTY = Integer.MIN_VALUE;
+		private int[] _keys;
+		private int[] _values;
+		private int _size = 0;
+
+		IntIntMap(int expected){
+			int capacity = 16;
+			while (capacity * 3 < expected * 4){
+				capacity <<= 1;
+			}
+			this._keys = new int[capacity];
+			this._values = new int[capacity];
+			Arrays.fill(this._keys, EMPTY);
+		}
+
+		// -1 when the key is absent
+		int get(int key){
+			int mask = this._keys.length - 1;
+			for (int i = hash(key) & mask; ; i = (i + 1) & mask){
+				if (this._keys[i] == key){
+					return this._values[i];
+				}
+				if (this._keys[i] == EMPTY){
+					return -1;
+				}
+			}
+		}
+
+		void put(int key, int value){
+			int mask = this._keys.length - 1;
+			int i = hash(key) & mask;
+			while (this._keys[i] != EMPTY && this._keys[i] != key){
+				i = (i + 1) & mask;
+			}
+			this._values[i] = value;
+			if (this._keys[i] == EMPTY){
+				this._keys[i] = key;
+				if (++this._size * 4 > this._keys.length * 3){
+					grow();
+				}
+			}
+		}
+
+		// returns the removed value, -1 when the key was absent
+		int remove(int key){
+			int mask = this._keys.length - 1;
+			int i = hash(key) & mask;
+			while (this._keys[i] != key){
+				if (this._keys[i] == EMPTY){
+					return -1;
+				}
+				i = (i + 1) & mask;
+			}
+			int value = this._values[i];
+			// moves back the entries that probed past the freed position
+			for (int j = (i + 1) & mask; this._keys[j] != EMPTY; j = (j + 1) & mask){
+				int home = hash(this._keys[j]) & mask;
+				if (((j - home) & mask) >= ((j - i) & mask)){
+					this._keys[i] = this._keys[j];
+					this._values[i] = this._values[j];
+					i = j;
+				}
+			}
+			this._keys[i] = EMPTY;
+			this._size--;
+			return value;
+		}
+
+		int size(){
+			return this._size;
+		}
+
+		long bytes(){
+			return 8L * this._keys.length;
+		}
+
+		private void grow(){
+			int[] keys = this._keys;
+			int[] values = this._values;
+			this._keys = new int[keys.length * 2];
+			this._values = new int[keys.length * 2];
+			Arrays.fill(this._keys, EMPTY);
+			int mask = this._keys.length - 1;
+			for (int j = 0; j < keys.length; j++){
+				if (keys[j] != EMPTY){
+					int i = hash(keys[j]) & mask;
+					while (this._keys[i] != EMPTY){
+						i = (i + 1) & mask;
+					}
+					this._keys[i] = keys[j];
+					this._values[i] = values[j];
+				}
+			}
+		}
+
+		private static int hash(int key){
+			int h = key * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+
+	/**
+	 * An open addressing table of long keys to positive counts; a key whose
+	 * count drops to 0 is removed.
+	 */
+	static final class LongCounts{
+		private static final long EMPTY = Long.MIN_VALUE;
+		private long[] _keys;
+		private int[] _counts;
+		private int _size = 0;
+
+		LongCounts(int expected){
+			int capacity = 16;
+			while (capacity * 3 < expected * 4){
+				capacity <<= 1;
+			}
+			this._keys = new long[capacity];
+			this._counts = new int[capacity];
+			Arrays.fill(this._keys, EMPTY);
+		}
+
+		int get(long key){
+			int mask = this._keys.length - 1;
+			for (int i = hash(key) & mask; ; i = (i + 1) & mask){
+				if (this._keys[i] == key){
+					return this._counts[i];
+				}
+				if (this._keys[i] == EMPTY){
+					return 0;
+				}
+			}
+		}
+
+		void add(long key, int delta){
+			int mask = this._keys.length - 1;
+			int i = hash(key) & mask;
+			while (this._keys[i] != EMPTY && this._keys[i] != key){
+				i = (i + 1) & mask;
+			}
+			if (this._keys[i] == EMPTY){
+				if (delta <= 0){
+					return;
+				}
+				this._keys[i] = key;
+				this._counts[i] = delta;
+				if (++this._size * 4 > this._keys.length * 3){
+					grow();
+				}
+				return;
+			}
+			this._counts[i] += delta;
+			if (this._counts[i] > 0){
+				return;
+			}
+			for (int j = (i + 1) & mask; this._keys[j] != EMPTY; j = (j + 1) & mask){
+				int home = hash(this._keys[j]) & mask;
+				if (((j - home) & mask) >= ((j - i) & mask)){
+					this._keys[i] = this._keys[j];
+					this._counts[i] = this._counts[j];
+					i = j;
+				}
+			}
+			this._keys[i] = EMPTY;
+			this._size--;
+		}
+
+		long bytes(){
+			return 12L * this._keys.length;
+		}
+
+		private void grow(){
+			long[] keys = this._keys;
+			int[] counts = this._counts;
+			this._keys = new long[keys.length * 2];
+			this._counts = new int[keys.length * 2];
+			Arrays.fill(this._keys, EMPTY);
+			int mask = this._keys.length - 1;
+			for (int j = 0; j < keys.length; j++){
+				if (keys[j] != EMPTY){
+					int i = hash(keys[j]) & mask;
+					while (this._keys[i] != EMPTY){
+						i = (i + 1) & mask;
+					}
+					this._keys[i] = keys[j];
+					this._counts[i] = counts[j];
+				}
+			}
+		}
+
+		private static int hash(long key){
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+
+	/**
+	 * The reservations and the counts derived from them.  Not thread safe;
+	 * guarded by the lock of the index.
+	 */
+	static final class Table{
+		private int[] _rnums;
+		private int[] _cids;
+		private int[] _fids;
+		private byte[] _statuses;
+		// slots handed out so far, and the released ones below that
+		private int _slots = 0;
+		private int[] _free = new int[64];
+		private int _freeCount = 0;
+		private final IntIntMap _byRnum;
+		private final LongCounts _holdings;
+		// flight index of each fnum, and a counter per flight index and status
+		private final IntIntMap _flights = new IntIntMap(1024);
+		private int[] _counts = new int[1024 * STATUSES.length()];
+
+		Table(int expected){
+			int capacity = Math.max(expected, 1024);
+			this._rnums = new int[capacity];
+			this._cids = new int[capacity];
+			this._fids = new int[capacity];
+			this._statuses = new byte[capacity];
+			this._byRnum = new IntIntMap(capacity);
+			this._holdings = new LongCounts(capacity);
+		}
+
+		void put(int rnum, int cid, int fid, int status){
+			int slot = this._byRnum.get(rnum);
+			if (slot >= 0){
+				unlink(slot);
+			}
+			else {
+				slot = allocate();
+				this._byRnum.put(rnum, slot);
+			}
+			this._rnums[slot] = rnum;
+			this._cids[slot] = cid;
+			this._fids[slot] = fid;
+			this._statuses[slot] = (byte) status;
+			this._holdings.add(key(cid, fid), 1);
+			if (status >= 0){
+				this._counts[flight(fid) * STATUSES.length() + status]++;
+			}
+		}
+
+		void remove(int rnum){
+			int slot = this._byRnum.remove(rnum);
+			if (slot < 0){
+				return;
+			}
+			unlink(slot);
+			if (this._freeCount == this._free.length){
+				this._free = Arrays.copyOf(this._free, this._free.length * 2);
+			}
+			this._free[this._freeCount++] = slot;
+		}
+
+		int count(int fid, int status){
+			int flight = this._flights.get(fid);
+			return flight < 0 ? 0 : this._counts[flight * STATUSES.length() + status];
+		}
+
+		boolean holds(int cid, int fid){
+			return this._holdings.get(key(cid, fid)) > 0;
+		}
+
+		int size(){
+			return this._byRnum.size();
+		}
+
+		long bytes(){
+			return 13L * this._rnums.length + 4L * this._free.length + 4L * this._counts.length
+				+ this._byRnum.bytes() + this._holdings.bytes() + this._flights.bytes();
+		}
+
+		private void unlink(int slot){
+			this._holdings.add(key(this._cids[slot], this._fids[slot]), -1);
+			int status = this._statuses[slot];
+			if (status >= 0){
+				this._counts[this._flights.get(this._fids[slot]) * STATUSES.length() + status]--;
+			}
+		}
+
+		private int allocate(){
+			if (this._freeCount > 0){
+				return this._free[--this._freeCount];
+			}
+			if (this._slots == this._rnums.length){
+				int capacity = this._rnums.length * 2;
+				this._rnums = Arrays.copyOf(this._rnums, capacity);
+				this._cids = Arrays.copyOf(this._cids, capacity);
+				this._fids = Arrays.copyOf(this._fids, capacity);
+				this._statuses = Arrays.copyOf(this._statuses, capacity);
+			}
+			return this._slots++;
+		}
+
+		// the flight index of the fnum, added when new
+		private int flight(int fid){
+			int flight = this._flights.get(fid);
+			if (flight >= 0){
+				return flight;
+			}
+			flight = this._flights.size();
+			this._flights.put(fid, flight);
+			if ((flight + 1) * STATUSES.length() > this._counts.length){
+				this._counts = Arrays.copyOf(this._counts, this._counts.length * 2);
+			}
+			return flight;
+		}
+
+		private static long key(int cid, int fid){
+			return ((long) cid << 32) | (fid & 0xFFFFFFFFL);
+		}
+	}
+
+	private final DBproject _esql;
+	private final ReentrantReadWriteLock _lock = new ReentrantReadWriteLock();
+	private Table _table = null;
+	// changes notified or written while loading, as {rnum, cid, fid, status}
+	private final List<int[]> _pending = new ArrayList<int[]>();
+	private volatile boolean _loaded = false;
+	private boolean _loading = false;
+	// the listener reconnected during the load, so it may have missed changes
+	private boolean _missed = false;
+	// changes notified so far, guarded by _pending; see sequence()
+	private long _sequence = 0;
+
+	public ReservationIndex(DBproject esql){
+		this._esql = esql;
+	}
+
+	/**
+	 * Applies a reservations notification, "rnum cid fid status" for a new
+	 * or changed reservation and "rnum" for a removed one.
+	 */
+	public void notified(String payload){
+		String[] fields = payload.split(" ");
+		try{
+			synchronized (this._pending){
+				this._sequence++;
+				if (fields.length == 1){
+					change(Integer.parseInt(fields[0]), 0, 0, REMOVED);
+				}
+				else if (fields.length == 4){
+					change(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), status(fields[3]));
+				}
+			}
+		}catch (NumberFormatException e){
+			// not a reservation
+		}
+	}
+
+	/**
+	 * Loads the whole index again before the next lookup.
+	 */
+	public void reset(){
+		synchronized (this._pending){
+			this._sequence++;
+			this._loaded = false;
+			this._missed = this._loading;
+		}
+	}
+
+	/**
+	 * Returns the number of changes notified so far; read it before a
+	 * booking and pass it to put() or remove().
+	 */
+	public long sequence(){
+		synchronized (this._pending){
+			return this._sequence;
+		}
+	}
+
+	/**
+	 * Records a reservation written by this client, unless a change was
+	 * notified since the sequence was read.  The notified status may then be
+	 * newer, and the booking's own notification brings its change anyway.
+	 */
+	public void put(int rnum, int cid, int fnum, String status, long sequence){
+		written(rnum, cid, fnum, status(status), sequence);
+	}
+
+	/**
+	 * Records a reservation removed by this client, unless a change was
+	 * notified since the sequence was read.
+	 */
+	public void remove(int rnum, long sequence){
+		written(rnum, 0, 0, REMOVED, sequence);
+	}
+
+	/**
+	 * Returns the number of reservations of a flight with the status.
+	 *
+	 * @param status C, R or W
+	 */
+	public int count(int fnum, String status) throws SQLException {
+		int code = status(status);
+		if (code < 0){
+			throw new IllegalArgumentException("status must be C, R or W");
+		}
+		loaded();
+		this._lock.readLock().lock();
+		try{
+			return this._table.count(fnum, code);
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	public int waitlisted(int fnum) throws SQLException {
+		return count(fnum, "W");
+	}
+
+	/**
+	 * Returns true when the customer has a reservation on the flight, of any
+	 * status.
+	 */
+	public boolean holds(int cid, int fnum) throws SQLException {
+		loaded();
+		this._lock.readLock().lock();
+		try{
+			return this._table.holds(cid, fnum);
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * The number of reservations in the index, 0 before it is loaded.
+	 */
+	public int size(){
+		this._lock.readLock().lock();
+		try{
+			return this._table == null ? 0 : this._table.size();
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * The bytes taken by the arrays of the index, 0 before it is loaded.
+	 */
+	public long getBytes(){
+		this._lock.readLock().lock();
+		try{
+			return this._table == null ? 0 : this._table.bytes();
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	//=========================================================================================================================================================================
+
+	private void written(int rnum, int cid, int fid, int status, long sequence){
+		synchronized (this._pending){
+			if (sequence == this._sequence){
+				change(rnum, cid, fid, status);
+			}
+		}
+	}
+
+	private void change(int rnum, int cid, int fid, int status){
+		synchronized (this._pending){
+			if (this._loading){
+				this._pending.add(new int[]{rnum, cid, fid, status});
+			}
+			else if (this._loaded){
+				this._lock.writeLock().lock();
+				try{
+					apply(this._table, rnum, cid, fid, status);
+				}finally{
+					this._lock.writeLock().unlock();
+				}
+			}
+		}
+	}
+
+	private static void apply(Table table, int rnum, int cid, int fid, int status){
+		if (status == REMOVED){
+			table.remove(rnum);
+		}
+		else {
+			table.put(rnum, cid, fid, status);
+		}
+	}
+
+	private void loaded() throws SQLException {
+		if (!this._loaded){
+			load();
+		}
+	}
+
+	private synchronized void load() throws SQLException {
+		if (this._loaded){
+			return;
+		}
+		synchronized (this._pending){
+			this._pending.clear();
+			this._loading = true;
+			this._missed = false;
+		}
+		Table table;
+		try{
+			table = this._esql.withConnection(pc -> {
+				Connection connection = pc.getConnection();
+				// the driver only fetches through a cursor inside a transaction
+				connection.setAutoCommit(false);
+				try{
+					PreparedStatement stmt = pc.getStatements().prepare(Queries.RESERVATION_INDEX);
+					stmt.setFetchSize(DBproject.FETCH_SIZE);
+					ResultSet rs = stmt.executeQuery();
+					Table t = new Table(Integer.getInteger("dbproject.reservationIndex.expected", 1 << 16));
+					while (rs.next()){
+						t.put(rs.getInt(1), rs.getInt(2), rs.getInt(3), status(rs.getString(4)));
+					}
+					rs.close();
+					connection.commit();
+					return t;
+				}finally{
+					connection.setAutoCommit(true);
+				}
+			});
+		}catch (SQLException e){
+			synchronized (this._pending){
+				this._loading = false;
+				this._pending.clear();
+			}
+			throw e;
+		}
+		// changes sent during the load may or may not be in it; replaying them in order gives their final state
+		synchronized (this._pending){
+			for (int[] c : this._pending){
+				apply(table, c[0], c[1], c[2], c[3]);
+			}
+			this._pending.clear();
+			this._lock.writeLock().lock();
+			try{
+				this._table = table;
+			}finally{
+				this._lock.writeLock().unlock();
+			}
+			this._loading = false;
+			this._loaded = !this._missed;
+		}
+	}
+
+	private static int status(String status){
+		return status == null || status.length() != 1 ? -1 : STATUSES.indexOf(status.charAt(0));
+	}
+}
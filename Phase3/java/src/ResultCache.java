@@ -0,0 +1,467 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * This class keeps the results of read-only queries by their SQL, with
+ * runs of whitespace collapsed, and parameter values.  The tables a query
+ * reads are taken from its FROM and JOIN clauses, and its cached results
+ * are dropped as soon as one of those tables is written:
+ *
+ *   - by this client, through any execute method of DBproject, including
+ *     the tables kept by triggers (e.g. Repairs writes RepairsPerPlane), and
+ *   - by other clients, through the table_changes notifications sent once
+ *     per statement by the triggers in constraints.sql.
+ *
+ * The cache holds at most dbproject.resultCache.maxBytes (estimated) and
+ * evicts the least recently used results first.  Statements that write,
+ * lock rows (FOR UPDATE) or call volatile functions such as now() or
+ * nextval() are never cached.  A result loaded while one of its tables was
+ * written is returned but not kept.
+ *
+ */
+
+public class ResultCache implements NotifyListener.Handler{
+	public static final String CHANNEL = "table_changes";
+	// tables written by triggers or ON DELETE CASCADE when a table is written, see constraints.sql
+	private static final Map<String, String[]> DERIVED = new HashMap<String, String[]>();
+	static{
+		DERIVED.put("repairs", new String[]{"repairsperplane", "repairsperyear"});
+		DERIVED.put("plane", new String[]{"repairsperplane"});
+	}
+	private static final Set<String> VOLATILE = new HashSet<String>(Arrays.asList(
+		"now", "nextval", "currval", "setval", "random", "current_date", "current_time", "current_timestamp",
+		"localtime", "localtimestamp", "clock_timestamp", "statement_timestamp", "timeofday", "txid_current"));
+	// words that end a FROM list or cannot be an alias
+	private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList(
+		"where", "group", "order", "having", "limit", "offset", "union", "intersect", "except", "join", "inner",
+		"left", "right", "full", "cross", "natural", "on", "using", "for", "returning", "window", "fetch", "lateral",
+		"select", "set", "values", "as", "and", "or", "not"));
+
+	/**
+	 * What a statement reads and writes, parsed once per SQL text.
+	 */
+	static final class Statement{
+		final String normalized;
+		final String[] reads;
+		final String[] writes;
+		// only plain reads of known tables are cached
+		final boolean cacheable;
+		// a statement that is neither a read nor a plain write, e.g. DDL; drops everything
+		final boolean unknown;
+
+		Statement(String normalized, String[] reads, String[] writes, boolean cacheable, boolean unknown){
+			this.normalized = normalized;
+			this.reads = reads;
+			this.writes = writes;
+			this.cacheable = cacheable;
+			this.unknown = unknown;
+		}
+	}
+
+	private static final class Key{
+		final char kind;
+		final String sql;
+		final Object[] params;
+		final int hash;
+
+		Key(char kind, String sql, Object[] params){
+			this.kind = kind;
+			this.sql = sql;
+			this.params = params;
+			this.hash = (sql.hashCode() * 31 + Arrays.hashCode(params)) * 31 + kind;
+		}
+
+		public int hashCode(){
+			return this.hash;
+		}
+
+		public boolean equals(Object o){
+			if (!(o instanceof Key)){
+				return false;
+			}
+			Key k = (Key) o;
+			return this.kind == k.kind && this.sql.equals(k.sql) && Arrays.equals(this.params, k.params);
+		}
+	}
+
+	private static final class Entry{
+		final Object value;
+		final String[] tables;
+		final long bytes;
+
+		Entry(Object value, String[] tables, long bytes){
+			this.value = value;
+			this.tables = tables;
+			this.bytes = bytes;
+		}
+	}
+
+	private final long _maxBytes;
+	private final Map<String, Statement> _statements = new ConcurrentHashMap<String, Statement>();
+	// least recently used first
+	private final LinkedHashMap<Key, Entry> _entries = new LinkedHashMap<Key, Entry>(256, 0.75f, true);
+	private final Map<String, Set<Key>> _byTable = new HashMap<String, Set<Key>>();
+	// writes seen per table, and clears of the whole cache
+	private final Map<String, Long> _versions = new HashMap<String, Long>();
+	private long _clears = 0;
+	private long _bytes = 0;
+	private long _hits = 0;
+	private long _misses = 0;
+	private long _evictions = 0;
+	private long _invalidations = 0;
+
+	public ResultCache(long maxBytes){
+		this._maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the cached result of the query, or loads it and keeps it.
+	 *
+	 * @param kind tells apart the results of different execute methods for the same query
+	 * @param load runs the query
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(char kind, String sql, Object[] params, Metrics.Call<T> load) throws SQLException {
+		Statement statement = statement(sql);
+		if (!statement.cacheable){
+			return load.call();
+		}
+		Key key = new Key(kind, statement.normalized, params.clone());
+		long[] versions;
+		synchronized (this){
+			Entry entry = this._entries.get(key);
+			if (entry != null){
+				this._hits++;
+				return (T) entry.value;
+			}
+			this._misses++;
+			versions = versions(statement.reads);
+		}
+		T value = load.call();
+		long bytes = 96 + 16L * params.length + sizeOf(value);
+		synchronized (this){
+			if (bytes <= this._maxBytes && Arrays.equals(versions, versions(statement.reads)) && !this._entries.containsKey(key)){
+				this._entries.put(key, new Entry(value, statement.reads, bytes));
+				for (String table : statement.reads){
+					this._byTable.computeIfAbsent(table, t -> new HashSet<Key>()).add(key);
+				}
+				this._bytes += bytes;
+				evict();
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Drops the results that read a table the statement writes.  Called by
+	 * DBproject for every statement it runs.
+	 */
+	public void wrote(String sql){
+		Statement statement = statement(sql);
+		if (statement.unknown){
+			clear();
+			return;
+		}
+		if (statement.writes.length == 0){
+			return;
+		}
+		synchronized (this){
+			for (String table : statement.writes){
+				invalidate(table);
+			}
+		}
+	}
+
+	/**
+	 * Drops the results that read the table of a table_changes notification.
+	 */
+	public void notified(String payload){
+		synchronized (this){
+			invalidate(payload.trim().toLowerCase());
+		}
+	}
+
+	/**
+	 * Drops everything, since writes of other clients may have been missed.
+	 */
+	public void reset(){
+		clear();
+	}
+
+	public synchronized void clear(){
+		this._clears++;
+		this._invalidations += this._entries.size();
+		this._entries.clear();
+		this._byTable.clear();
+		this._bytes = 0;
+	}
+
+	public synchronized int size(){
+		return this._entries.size();
+	}
+
+	public synchronized long getBytes(){
+		return this._bytes;
+	}
+
+	public synchronized long getHits(){
+		return this._hits;
+	}
+
+	public synchronized long getMisses(){
+		return this._misses;
+	}
+
+	public synchronized long getEvictions(){
+		return this._evictions;
+	}
+
+	public synchronized long getInvalidations(){
+		return this._invalidations;
+	}
+
+	public synchronized String stats(){
+		return String.format("Result cache: %d results, %d of %d bytes, %d hits, %d misses, %d evictions, %d invalidations",
+			this._entries.size(), this._bytes, this._maxBytes, this._hits, this._misses, this._evictions, this._invalidations);
+	}
+
+	//=========================================================================================================================================================================
+
+	// called with the lock held
+	private void invalidate(String table){
+		this._versions.merge(table, 1L, Long::sum);
+		Set<Key> keys = this._byTable.remove(table);
+		if (keys != null){
+			for (Key key : keys){
+				Entry entry = this._entries.remove(key);
+				if (entry != null){
+					unlink(key, entry, table);
+					this._invalidations++;
+				}
+			}
+		}
+		String[] derived = DERIVED.get(table);
+		if (derived != null){
+			for (String t : derived){
+				invalidate(t);
+			}
+		}
+	}
+
+	// called with the lock held
+	private void evict(){
+		Iterator<Map.Entry<Key, Entry>> it = this._entries.entrySet().iterator();
+		while (this._bytes > this._maxBytes && it.hasNext()){
+			Map.Entry<Key, Entry> e = it.next();
+			it.remove();
+			unlink(e.getKey(), e.getValue(), null);
+			this._evictions++;
+		}
+	}
+
+	// removes a dropped entry from the keys of its other tables
+	private void unlink(Key key, Entry entry, String skip){
+		this._bytes -= entry.bytes;
+		for (String table : entry.tables){
+			if (!table.equals(skip)){
+				Set<Key> keys = this._byTable.get(table);
+				if (keys != null){
+					keys.remove(key);
+					if (keys.isEmpty()){
+						this._byTable.remove(table);
+					}
+				}
+			}
+		}
+	}
+
+	// called with the lock held
+	private long[] versions(String[] tables){
+		long[] versions = new long[tables.length + 1];
+		versions[0] = this._clears;
+		for (int i = 0; i < tables.length; i++){
+			versions[i + 1] = this._versions.getOrDefault(tables[i], 0L);
+		}
+		return versions;
+	}
+
+	// a rough estimate of the heap taken by a result
+	private static long sizeOf(Object value){
+		if (value instanceof List){
+			long bytes = 24;
+			for (Object o : (List<?>) value){
+				bytes += 8 + sizeOf(o);
+			}
+			return bytes;
+		}
+		if (value instanceof String){
+			return 40 + 2L * ((String) value).length();
+		}
+		return 16;
+	}
+
+	Statement statement(String sql){
+		Statement statement = this._statements.get(sql);
+		if (statement == null){
+			// queries built with literal values would otherwise fill the map
+			if (this._statements.size() > 4096){
+				this._statements.clear();
+			}
+			statement = parse(sql);
+			this._statements.put(sql, statement);
+		}
+		return statement;
+	}
+
+	static Statement parse(String sql){
+		List<String> tokens = tokens(QueryLog.fingerprint(sql).toLowerCase());
+		Set<String> reads = new HashSet<String>();
+		Set<String> writes = new HashSet<String>();
+		Set<String> ctes = new HashSet<String>();
+		boolean locks = false;
+		boolean volatiles = false;
+		for (int i = 0; i < tokens.size(); i++){
+			String t = tokens.get(i);
+			String prev = i > 0 ? tokens.get(i - 1) : "";
+			String next = i + 1 < tokens.size() ? tokens.get(i + 1) : "";
+			if (t.equals("from") || t.equals("join")){
+				i = tables(tokens, i + 1, t.equals("from"), reads);
+				i--;
+			}
+			else if (t.equals("into") && prev.equals("insert")){
+				writes.add(name(next));
+			}
+			else if (t.equals("update") && !prev.equals("for") && !prev.equals("do") && !prev.equals("key")){
+				writes.add(name(next.equals("only") && i + 2 < tokens.size() ? tokens.get(i + 2) : next));
+			}
+			else if (t.equals("delete") && next.equals("from")){
+				writes.add(name(i + 2 < tokens.size() ? tokens.get(i + 2) : ""));
+			}
+			else if (t.equals("for") && (next.equals("update") || next.equals("share") || next.equals("no") || next.equals("key"))){
+				locks = true;
+			}
+			else if (next.equals("as") && i + 2 < tokens.size() && tokens.get(i + 2).equals("(")){
+				ctes.add(t);
+			}
+			if (VOLATILE.contains(t) || t.startsWith("pg_")){
+				volatiles = true;
+			}
+		}//end for
+		reads.removeAll(ctes);
+		writes.removeAll(ctes);
+		reads.remove("");
+		writes.remove("");
+		String first = tokens.isEmpty() ? "" : tokens.get(0);
+		boolean read = first.equals("select") || first.equals("with");
+		boolean write = first.equals("insert") || first.equals("update") || first.equals("delete") || (first.equals("with") && !writes.isEmpty());
+		return new Statement(normalize(sql), reads.toArray(new String[0]), writes.toArray(new String[0]),
+			read && writes.isEmpty() && !locks && !volatiles && !reads.isEmpty(), !read && !write);
+	}
+
+	// reads the table names of a FROM list or JOIN from position i, returns the position after it
+	private static int tables(List<String> tokens, int i, boolean list, Set<String> reads){
+		while (i < tokens.size()){
+			String t = tokens.get(i);
+			// a subquery, whose own FROM is read on its own, or the end of the list
+			if (!Character.isLetter(t.charAt(0)) && t.charAt(0) != '_' || KEYWORDS.contains(t)){
+				return i;
+			}
+			i++;
+			if (i < tokens.size() && tokens.get(i).equals("(")){
+				// a function such as generate_series(...)
+				return i;
+			}
+			reads.add(name(t));
+			if (i < tokens.size() && tokens.get(i).equals("as")){
+				i++;
+			}
+			if (i < tokens.size() && Character.isLetter(tokens.get(i).charAt(0)) && !KEYWORDS.contains(tokens.get(i))){
+				// the alias
+				i++;
+			}
+			if (!list || i >= tokens.size() || !tokens.get(i).equals(",")){
+				return i;
+			}
+			i++;
+		}//end while
+		return i;
+	}
+
+	// the table of a possibly schema qualified name
+	private static String name(String token){
+		int dot = token.lastIndexOf('.');
+		return dot < 0 ? token : token.substring(dot + 1);
+	}
+
+	private static List<String> tokens(String sql){
+		List<String> tokens = new ArrayList<String>();
+		int n = sql.length();
+		int i = 0;
+		while (i < n){
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)){
+				i++;
+			}
+			else if (Character.isLetter(c) || c == '_' || c == '"'){
+				int start = i;
+				while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_' || sql.charAt(i) == '.' || sql.charAt(i) == '"')){
+					i++;
+				}
+				tokens.add(sql.substring(start, i).replace("\"", ""));
+			}
+			else {
+				tokens.add(String.valueOf(c));
+				i++;
+			}
+		}//end while
+		return tokens;
+	}
+
+	// the SQL with every run of whitespace outside quotes made one space
+	private static String normalize(String sql){
+		StringBuilder sb = new StringBuilder(sql.length());
+		char quote = 0;
+		boolean space = false;
+		for (int i = 0; i < sql.length(); i++){
+			char c = sql.charAt(i);
+			if (quote == 0 && Character.isWhitespace(c)){
+				space = sb.length() > 0;
+				continue;
+			}
+			if (space){
+				sb.append(' ');
+				space = false;
+			}
+			if (quote == 0 && (c == '\'' || c == '"')){
+				quote = c;
+			}
+			else if (c == quote){
+				quote = 0;
+			}
+			sb.append(c);
+		}//end for
+		return sb.toString();
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+
+/**
+ * This class writes a result set to a writer one row at a time, so a result
+ * of any size is printed in constant memory as long as the statement fetches
+ * its rows through a cursor.  Rows are written as tab separated values (the
+ * format the menu always used), comma separated values, or fixed width
+ * columns sized from the column metadata.
+ *
+ */
+
+public class ResultPrinter{
+
+	public enum Format{
+		TSV, CSV, FIXED;
+
+		/**
+		 * Parses a format name, ignoring case.
+		 */
+		public static Format parse(String name){
+			return Format.valueOf(name.trim().toUpperCase());
+		}
+	}
+
+	//widest column printed in fixed width format
+	private static final int MAX_FIXED_WIDTH = 64;
+	//rows between two progress lines
+	private static final int PROGRESS_INTERVAL = 1000000;
+
+	private final Writer _out;
+	private final Format _format;
+	//whether the header is written for an empty result too
+	private final boolean _alwaysHeader;
+	//where rows/sec are reported, null to stay quiet
+	private final PrintStream _stats;
+
+	public ResultPrinter(Writer out, Format format, PrintStream stats){
+		this(out, format, false, stats);
+	}
+
+	/**
+	 * @param alwaysHeader write the header for an empty result too, so that a
+	 *        file of no rows can be told from a broken one
+	 */
+	public ResultPrinter(Writer out, Format format, boolean alwaysHeader, PrintStream stats){
+		this._out = out;
+		this._format = format;
+		this._alwaysHeader = alwaysHeader;
+		this._stats = stats;
+	}
+
+	/**
+	 * Writes a header line with the column names followed by every row of
+	 * the result set, then flushes the writer.  Nothing is written for an
+	 * empty result unless the header is always written.
+	 *
+	 * @return the number of rows written
+	 */
+	public int print(ResultSet rs) throws SQLException, IOException {
+		long start = System.nanoTime();
+		// column names and widths are looked up once per result
+		ResultSetMetaData rsmd = rs.getMetaData();
+		int numCol = rsmd.getColumnCount();
+		String[] names = new String[numCol];
+		int[] widths = new int[numCol];
+		for (int i = 0; i < numCol; i++){
+			names[i] = rsmd.getColumnName(i + 1);
+			widths[i] = Math.max(names[i].length(), Math.min(rsmd.getColumnDisplaySize(i + 1), MAX_FIXED_WIDTH));
+		}
+
+		int rowCount = 0;
+		String[] values = new String[numCol];
+		if (this._alwaysHeader){
+			writeRow(names, widths, false);
+		}
+		while (rs.next()){
+			if (rowCount == 0 && !this._alwaysHeader){
+				writeRow(names, widths, false);
+			}
+			for (int i = 0; i < numCol; i++){
+				values[i] = rs.getString(i + 1);
+			}
+			writeRow(values, widths, true);
+			++rowCount;
+			if (this._stats != null && rowCount % PROGRESS_INTERVAL == 0){
+				this._stats.println(rate(rowCount, start) + " ...");
+			}
+		}
+		this._out.flush();
+		if (this._stats != null){
+			this._stats.println(rate(rowCount, start));
+		}
+		return rowCount;
+	}
+
+	private void writeRow(String[] values, int[] widths, boolean data) throws IOException {
+		for (int i = 0; i < values.length; i++){
+			String value = values[i];
+			switch (this._format){
+				case CSV:
+					if (i > 0){
+						this._out.write(',');
+					}
+					writeCsv(value);
+					break;
+				case FIXED:
+					String text = String.valueOf(value);
+					this._out.write(text);
+					if (i < values.length - 1){
+						for (int pad = text.length(); pad <= widths[i]; pad++){
+							this._out.write(' ');
+						}
+					}
+					break;
+				default:
+					this._out.write(String.valueOf(value));
+					this._out.write('\t');
+			}
+		}
+		this._out.write('\n');
+	}
+
+	// quotes values holding a separator, a quote or a line break; NULL is an empty field
+	private void writeCsv(String value) throws IOException {
+		if (value == null){
+			return;
+		}
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++){
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote){
+			this._out.write(value);
+			return;
+		}
+		this._out.write('"');
+		this._out.write(value.replace("\"", "\"\""));
+		this._out.write('"');
+	}
+
+	private static String rate(int rowCount, long start){
+		double seconds = (System.nanoTime() - start) / 1e9;
+		return String.format("(%d rows in %.2f s, %.0f rows/s)", rowCount, seconds, seconds > 0 ? rowCount / seconds : 0.0);
+	}
+}
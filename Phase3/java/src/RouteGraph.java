@@ -0,0 +1,456 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * This class keeps every scheduled flight in memory as a leg between two
+ * airports, with the legs leaving each airport sorted by departure time,
+ * and searches it for itineraries of one to three legs.  A connection must
+ * leave at least dbproject.routes.minConnectionMinutes (45) and at most
+ * dbproject.routes.maxConnectionMinutes (1440) after the previous leg
+ * arrives, and no airport is visited twice.
+ *
+ * The graph is loaded on the first search.  It follows the flight_seats
+ * notifications: a new num_sold is applied in place, and any other change
+ * of a flight marks it to be reloaded before the next search.  After the
+ * listener reconnects the whole graph is reloaded.
+ *
+ */
+
+public class RouteGraph implements NotifyListener.Handler{
+
+	/**
+	 * The order of the itineraries found.
+	 */
+	public enum Rank{
+		COST, ARRIVAL;
+
+		public static Rank parse(String name){
+			try{
+				return valueOf(name.trim().toUpperCase());
+			}catch (IllegalArgumentException e){
+				throw new IllegalArgumentException("rank must be cost or arrival");
+			}
+		}
+	}
+
+	/**
+	 * One flight between two airports.  Times are minutes since the epoch.
+	 */
+	static final class Leg{
+		final int fnum;
+		final int cost;
+		final int from;
+		final int to;
+		final String fromAirport;
+		final String toAirport;
+		final long departure;
+		final long arrival;
+		// -1 when the flight has no plane
+		final int seats;
+		volatile int sold;
+
+		Leg(int fnum, int cost, int from, int to, String fromAirport, String toAirport, long departure, long arrival, int seats, int sold){
+			this.fnum = fnum;
+			this.cost = cost;
+			this.from = from;
+			this.to = to;
+			this.fromAirport = fromAirport;
+			this.toAirport = toAirport;
+			this.departure = departure;
+			this.arrival = arrival;
+			this.seats = seats;
+			this.sold = sold;
+		}
+
+		int free(){
+			return this.seats < 0 ? 0 : this.seats - this.sold;
+		}
+	}
+
+	/**
+	 * A sequence of connecting flights.
+	 */
+	public final class Itinerary{
+		private final Leg[] _legs;
+		private final int _cost;
+
+		Itinerary(Leg[] legs, int cost){
+			this._legs = legs;
+			this._cost = cost;
+		}
+
+		public int getCost(){
+			return this._cost;
+		}
+
+		public int getLegCount(){
+			return this._legs.length;
+		}
+
+		public LocalDateTime getDeparture(){
+			return time(this._legs[0].departure);
+		}
+
+		public LocalDateTime getArrival(){
+			return time(this._legs[this._legs.length - 1].arrival);
+		}
+
+		public int[] getFlights(){
+			int[] flights = new int[this._legs.length];
+			for (int i = 0; i < flights.length; i++){
+				flights[i] = this._legs[i].fnum;
+			}
+			return flights;
+		}
+
+		/**
+		 * Returns the itinerary as named values, one map per leg.
+		 */
+		public Map<String, Object> toMap(){
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+			map.put("cost", this._cost);
+			map.put("departure", getDeparture().toString());
+			map.put("arrival", getArrival().toString());
+			List<Object> legs = new ArrayList<Object>();
+			for (Leg leg : this._legs){
+				Map<String, Object> l = new LinkedHashMap<String, Object>();
+				l.put("fnum", leg.fnum);
+				l.put("from", leg.fromAirport);
+				l.put("to", leg.toAirport);
+				l.put("departure", time(leg.departure).toString());
+				l.put("arrival", time(leg.arrival).toString());
+				l.put("cost", leg.cost);
+				l.put("available", leg.free());
+				legs.add(l);
+			}
+			map.put("legs", legs);
+			return map;
+		}
+
+		public String toString(){
+			StringBuilder sb = new StringBuilder(String.format("$%d  %s -> %s", this._cost, getDeparture(), getArrival()));
+			for (Leg leg : this._legs){
+				sb.append(String.format("%n    flight %d  %s %s -> %s %s", leg.fnum,
+					leg.fromAirport, time(leg.departure), leg.toAirport, time(leg.arrival)));
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * The state of one search.
+	 */
+	private final class Search{
+		final int origin;
+		final int destination;
+		final int maxLegs;
+		final int seats;
+		final int limit;
+		final Comparator<Itinerary> order;
+		final Rank rank;
+		final Leg[] path;
+		// the worst itinerary kept is at the head
+		final PriorityQueue<Itinerary> best;
+
+		Search(int origin, int destination, int maxLegs, int seats, Rank rank, int limit){
+			this.origin = origin;
+			this.destination = destination;
+			this.maxLegs = maxLegs;
+			this.seats = seats;
+			this.rank = rank;
+			this.limit = limit;
+			this.path = new Leg[maxLegs];
+			Comparator<Itinerary> byCost = Comparator.comparingInt(Itinerary::getCost);
+			Comparator<Itinerary> byArrival = Comparator.comparingLong(i -> i._legs[i._legs.length - 1].arrival);
+			this.order = rank == Rank.COST ? byCost.thenComparing(byArrival) : byArrival.thenComparing(byCost);
+			this.best = new PriorityQueue<Itinerary>(limit + 1, this.order.reversed());
+		}
+
+		// true when no itinerary through this leg can beat the ones kept
+		boolean pruned(int cost, long arrival){
+			if (this.best.size() < this.limit){
+				return false;
+			}
+			Itinerary worst = this.best.peek();
+			return this.rank == Rank.COST ? cost > worst._cost : arrival > worst._legs[worst._legs.length - 1].arrival;
+		}
+
+		void offer(int legs, int cost){
+			this.best.add(new Itinerary(Arrays.copyOf(this.path, legs), cost));
+			if (this.best.size() > this.limit){
+				this.best.poll();
+			}
+		}
+	}
+
+	private final DBproject _esql;
+	private final long _minConnection;
+	private final long _maxConnection;
+	private final ReentrantReadWriteLock _lock = new ReentrantReadWriteLock();
+	private final Map<String, Integer> _airportIds = new HashMap<String, Integer>();
+	// legs leaving each airport, by departure time
+	private final List<List<Leg>> _departures = new ArrayList<List<Leg>>();
+	private final Map<Integer, Leg> _legs = new HashMap<Integer, Leg>();
+	// flights to reload before the next search
+	private final Set<Integer> _stale = ConcurrentHashMap.newKeySet();
+	private volatile boolean _loaded = false;
+	private volatile boolean _loading = false;
+
+	public RouteGraph(DBproject esql, int minConnectionMinutes, int maxConnectionMinutes){
+		this._esql = esql;
+		this._minConnection = minConnectionMinutes;
+		this._maxConnection = maxConnectionMinutes;
+	}
+
+	/**
+	 * Applies a flight_seats notification, "fnum num_sold" or "fnum".
+	 */
+	public void notified(String payload){
+		if (!this._loaded && !this._loading){
+			return;
+		}
+		int space = payload.indexOf(' ');
+		try{
+			int fnum = Integer.parseInt(space < 0 ? payload : payload.substring(0, space));
+			if (space >= 0){
+				Leg leg = leg(fnum);
+				if (leg != null){
+					leg.sold = Integer.parseInt(payload.substring(space + 1));
+					return;
+				}
+			}
+			this._stale.add(fnum);
+		}catch (NumberFormatException e){
+			// not a flight
+		}
+	}
+
+	/**
+	 * Reloads the whole graph before the next search.
+	 */
+	public void reset(){
+		this._loaded = false;
+	}
+
+	/**
+	 * Returns the best itineraries from one airport to another whose first
+	 * leg departs within the given days.
+	 *
+	 * @param maxLegs the most legs of an itinerary, 1 to 3
+	 * @param seats the open seats every leg must have
+	 * @param limit the most itineraries returned
+	 * @return the itineraries, best first
+	 */
+	public List<Itinerary> search(String from, String to, LocalDate firstDay, LocalDate lastDay, int maxLegs, int seats, Rank rank, int limit) throws SQLException {
+		refresh();
+		this._lock.readLock().lock();
+		try{
+			Integer origin = this._airportIds.get(from.trim().toUpperCase());
+			Integer destination = this._airportIds.get(to.trim().toUpperCase());
+			if (origin == null || destination == null || origin.equals(destination)){
+				return new ArrayList<Itinerary>();
+			}
+			Search search = new Search(origin, destination, maxLegs, seats, rank, limit);
+			extend(search, origin, 0, firstDay.toEpochDay() * 1440, lastDay.plusDays(1).toEpochDay() * 1440 - 1, 0);
+
+			List<Itinerary> found = new ArrayList<Itinerary>(search.best);
+			Collections.sort(found, search.order);
+			return found;
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	// tries every leg from the airport that departs in [earliest, latest]
+	private void extend(Search s, int airport, int depth, long earliest, long latest, int cost){
+		List<Leg> legs = this._departures.get(airport);
+		for (int i = firstDeparture(legs, earliest); i < legs.size(); i++){
+			Leg leg = legs.get(i);
+			if (leg.departure > latest){
+				break;
+			}
+			if (leg.free() < s.seats || leg.to == s.origin || visited(s, depth, leg.to)){
+				continue;
+			}
+			int total = cost + leg.cost;
+			if (s.pruned(total, leg.arrival)){
+				continue;
+			}
+			s.path[depth] = leg;
+			if (leg.to == s.destination){
+				s.offer(depth + 1, total);
+			}
+			else if (depth + 1 < s.maxLegs){
+				extend(s, leg.to, depth + 1, leg.arrival + this._minConnection, leg.arrival + this._maxConnection, total);
+			}
+		}//end for
+	}
+
+	private static boolean visited(Search s, int depth, int airport){
+		for (int i = 0; i < depth; i++){
+			if (s.path[i].to == airport){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// index of the first leg departing at or after the given minute
+	private static int firstDeparture(List<Leg> legs, long minute){
+		int lo = 0;
+		int hi = legs.size();
+		while (lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if (legs.get(mid).departure < minute){
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	public int size(){
+		this._lock.readLock().lock();
+		try{
+			return this._legs.size();
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	//=========================================================================================================================================================================
+
+	private void refresh() throws SQLException {
+		if (!this._loaded){
+			synchronized (this){
+				if (!this._loaded){
+					// changes made while loading are reloaded by the next search
+					this._loading = true;
+					this._stale.clear();
+					TypedResult rows;
+					try{
+						rows = this._esql.executeQueryAndReturnTyped(new TypedResult(), Queries.ROUTE_LEGS);
+					}finally{
+						this._loading = false;
+					}
+					this._lock.writeLock().lock();
+					try{
+						this._legs.clear();
+						for (List<Leg> legs : this._departures){
+							legs.clear();
+						}
+						add(rows);
+					}finally{
+						this._lock.writeLock().unlock();
+					}
+					this._loaded = true;
+				}
+			}
+			return;
+		}
+		if (this._stale.isEmpty()){
+			return;
+		}
+		StringBuilder ids = new StringBuilder("{");
+		List<Integer> stale = new ArrayList<Integer>();
+		for (Iterator<Integer> it = this._stale.iterator(); it.hasNext();){
+			int fnum = it.next();
+			it.remove();
+			stale.add(fnum);
+			ids.append(ids.length() > 1 ? "," : "").append(fnum);
+		}
+		ids.append('}');
+		TypedResult rows = this._esql.executeQueryAndReturnTyped(new TypedResult(), Queries.ROUTE_LEGS_IN, ids.toString());
+		this._lock.writeLock().lock();
+		try{
+			for (int fnum : stale){
+				remove(fnum);
+			}
+			add(rows);
+		}finally{
+			this._lock.writeLock().unlock();
+		}
+	}
+
+	// called with the write lock held
+	private void add(TypedResult rows){
+		for (int r = 0; r < rows.size(); r++){
+			remove(rows.getInt(r, "fnum"));
+			String from = rows.getString(r, "departure_airport").trim().toUpperCase();
+			String to = rows.getString(r, "arrival_airport").trim().toUpperCase();
+			Leg leg = new Leg(rows.getInt(r, "fnum"), rows.getInt(r, "cost"), airportId(from), airportId(to), from, to,
+				rows.getLong(r, "departure_minute"), rows.getLong(r, "arrival_minute"),
+				rows.isNull(r, "seats") ? -1 : rows.getInt(r, "seats"), rows.getInt(r, "num_sold"));
+			this._legs.put(leg.fnum, leg);
+			List<Leg> legs = this._departures.get(leg.from);
+			legs.add(firstDeparture(legs, leg.departure), leg);
+		}//end for
+	}
+
+	// called with the write lock held
+	private void remove(int fnum){
+		Leg leg = this._legs.remove(fnum);
+		if (leg != null){
+			List<Leg> legs = this._departures.get(leg.from);
+			for (int i = firstDeparture(legs, leg.departure); i < legs.size(); i++){
+				if (legs.get(i) == leg){
+					legs.remove(i);
+					break;
+				}
+			}
+		}
+	}
+
+	private int airportId(String airport){
+		Integer id = this._airportIds.get(airport);
+		if (id == null){
+			id = this._airportIds.size();
+			this._airportIds.put(airport, id);
+			this._departures.add(new ArrayList<Leg>());
+		}
+		return id;
+	}
+
+	private Leg leg(int fnum){
+		this._lock.readLock().lock();
+		try{
+			return this._legs.get(fnum);
+		}finally{
+			this._lock.readLock().unlock();
+		}
+	}
+
+	private static LocalDateTime time(long minute){
+		return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * This class adds the flights of a schedule file in one pass.  Each line of
+ * the file is one flight:
+ *
+ *   fnum,cost,num_stops,departure_date,arrival_date,departure_airport,arrival_airport,plane_id,pilot_id
+ *
+ * with dates as yyyy-mm-dd; a header line is skipped.  The file is read in
+ * batches of dbproject.import.batchSize (1000) lines.  The planes, pilots and
+ * flight numbers of a batch are checked with one query each, and the
+ * Flight, FlightInfo and Schedule rows of the valid lines are written as
+ * three JDBC batches in one transaction.  Invalid lines are rejected with
+ * their line number and reason, and do not stop the import.
+ *
+ *   java ScheduleImport <dbname> <port> <user> <schedule file>
+ *
+ */
+
+public class ScheduleImport{
+
+	/**
+	 * One flight of the schedule.
+	 */
+	static final class Row{
+		int line;
+		int fnum;
+		int cost;
+		int numStops;
+		String departureDate;
+		String arrivalDate;
+		String departureAirport;
+		String arrivalAirport;
+		int planeId;
+		int pilotId;
+	}
+
+	/**
+	 * The number of flights added and the lines that were rejected.
+	 */
+	public static final class Result{
+		private int _imported = 0;
+		private final List<String> _rejects = new ArrayList<String>();
+
+		public int getImported(){
+			return this._imported;
+		}
+
+		public List<String> getRejects(){
+			return this._rejects;
+		}
+
+		void reject(int line, String reason){
+			this._rejects.add("line " + line + ": " + reason);
+		}
+	}
+
+	private final DBproject _esql;
+	private final int _batchSize;
+	// flight numbers seen earlier in the file
+	private final Set<Integer> _seen = new HashSet<Integer>();
+
+	public ScheduleImport(DBproject esql, int batchSize){
+		this._esql = esql;
+		this._batchSize = batchSize;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 4){
+			System.err.println("Usage: java [-classpath <classpath>] " + ScheduleImport.class.getName() +
+				" <dbname> <port> <user> <schedule file>");
+			return;
+		}
+		Class.forName("org.postgresql.Driver");
+		DBproject esql = new DBproject(args[0], args[1], args[2], "");
+		try{
+			long start = System.nanoTime();
+			Result result = new ScheduleImport(esql, Integer.getInteger("dbproject.import.batchSize", 1000)).run(new FileReader(args[3]));
+			for (String reject : result.getRejects()){
+				System.out.println(reject);
+			}
+			System.out.println(String.format("Imported %d flights, rejected %d lines in %.1f s",
+				result.getImported(), result.getRejects().size(), (System.nanoTime() - start) / 1e9));
+		}finally{
+			esql.cleanup();
+		}
+	}
+
+	/**
+	 * Imports every line of the schedule and closes the reader.
+	 */
+	public Result run(Reader reader) throws IOException, SQLException {
+		Result result = new Result();
+		BufferedReader in = new BufferedReader(reader, 1 << 16);
+		try{
+			List<Row> batch = new ArrayList<Row>(this._batchSize);
+			String line;
+			int lineNumber = 0;
+			while ((line = in.readLine()) != null){
+				lineNumber++;
+				if (line.trim().isEmpty() || (lineNumber == 1 && line.startsWith("fnum"))){
+					continue;
+				}
+				try{
+					batch.add(parse(line, lineNumber));
+				}catch (IllegalArgumentException e){
+					result.reject(lineNumber, e.getMessage());
+					continue;
+				}
+				if (batch.size() == this._batchSize){
+					flush(batch, result);
+					batch.clear();
+				}
+			}//end while
+			flush(batch, result);
+		}finally{
+			in.close();
+		}
+		return result;
+	}
+
+	private void flush(List<Row> batch, Result result) throws SQLException {
+		if (batch.isEmpty()){
+			return;
+		}
+		// one query per referenced table for the whole batch
+		Set<Integer> planes = existing(Queries.PLANE_IDS_IN, batch, r -> r.planeId);
+		Set<Integer> pilots = existing(Queries.PILOT_IDS_IN, batch, r -> r.pilotId);
+		Set<Integer> flights = existing(Queries.FLIGHT_NUMS_IN, batch, r -> r.fnum);
+
+		List<Row> valid = new ArrayList<Row>(batch.size());
+		for (Row r : batch){
+			if (flights.contains(r.fnum) || this._seen.contains(r.fnum)){
+				result.reject(r.line, "flight " + r.fnum + " already exists");
+			}
+			else if (!planes.contains(r.planeId)){
+				result.reject(r.line, "plane " + r.planeId + " does not exist");
+			}
+			else if (!pilots.contains(r.pilotId)){
+				result.reject(r.line, "pilot " + r.pilotId + " does not exist");
+			}
+			else {
+				this._seen.add(r.fnum);
+				valid.add(r);
+			}
+		}//end for
+
+		// rows of each table together, so each table is a single batch
+		UnitOfWork work = this._esql.newUnitOfWork();
+		for (Row r : valid){
+			work.add(Queries.INSERT_FLIGHT, r.fnum, r.cost, 0, r.numStops, r.departureDate, r.arrivalDate, r.arrivalAirport, r.departureAirport);
+		}
+		for (Row r : valid){
+			work.add(Queries.INSERT_FLIGHT_INFO, this._esql.getFlightInfoIds().nextId(), r.fnum, r.pilotId, r.planeId);
+		}
+		for (Row r : valid){
+			work.add(Queries.INSERT_SCHEDULE, this._esql.getScheduleIds().nextId(), r.fnum, r.departureDate, r.arrivalDate);
+		}
+		try{
+			work.commit();
+			result._imported += valid.size();
+		}catch (SQLException e){
+			// something changed since the checks; add the lines one at a time to find the failing ones
+			for (Row r : valid){
+				try{
+					Operations.addFlight(this._esql, r.fnum, r.cost, 0, r.numStops, r.departureDate, r.arrivalDate,
+						r.departureAirport, r.arrivalAirport, r.planeId, r.pilotId);
+					result._imported++;
+				}catch (IllegalArgumentException e2){
+					result.reject(r.line, e2.getMessage());
+				}catch (SQLException e2){
+					result.reject(r.line, e2.getMessage() + " (SQLState " + e2.getSQLState() + ")");
+				}
+			}//end for
+		}
+	}
+
+	private interface Key{
+		int of(Row r);
+	}
+
+	// returns the keys of the batch that are found by the query
+	private Set<Integer> existing(String query, List<Row> batch, Key key) throws SQLException {
+		StringBuilder ids = new StringBuilder("{");
+		for (Row r : batch){
+			if (ids.length() > 1){
+				ids.append(',');
+			}
+			ids.append(key.of(r));
+		}
+		ids.append('}');
+		TypedResult found = this._esql.executeQueryAndReturnTyped(new TypedResult(), query, ids.toString());
+		Set<Integer> existing = new HashSet<Integer>(found.size() * 2);
+		for (int i = 0; i < found.size(); i++){
+			existing.add(found.getInt(i, 0));
+		}
+		return existing;
+	}
+
+	static Row parse(String line, int lineNumber){
+		String[] fields = line.split(",", -1);
+		if (fields.length != 9){
+			throw new IllegalArgumentException("expected 9 fields but found " + fields.length);
+		}
+		Row r = new Row();
+		r.line = lineNumber;
+		r.fnum = intField(fields[0], "fnum");
+		r.cost = intField(fields[1], "cost");
+		r.numStops = intField(fields[2], "num_stops");
+		r.departureDate = dateField(fields[3], "departure_date");
+		r.arrivalDate = dateField(fields[4], "arrival_date");
+		r.departureAirport = fields[5].trim();
+		r.arrivalAirport = fields[6].trim();
+		r.planeId = intField(fields[7], "plane_id");
+		r.pilotId = intField(fields[8], "pilot_id");
+		require(r.cost > 0, "cost must be greater than 0");
+		require(r.numStops >= 0, "number of stops must be at least 0");
+		require(r.departureAirport.length() > 0 && r.departureAirport.length() <= 5, "departure airport code must be 1 to 5 characters");
+		require(r.arrivalAirport.length() > 0 && r.arrivalAirport.length() <= 5, "arrival airport code must be 1 to 5 characters");
+		require(r.arrivalDate.compareTo(r.departureDate) >= 0, "arrival date is before the departure date");
+		return r;
+	}
+
+	private static int intField(String value, String name){
+		try{
+			return Integer.parseInt(value.trim());
+		}catch (NumberFormatException e){
+			throw new IllegalArgumentException(name + " must be an integer");
+		}
+	}
+
+	private static String dateField(String value, String name){
+		try{
+			return LocalDate.parse(value.trim()).toString();
+		}catch (DateTimeParseException e){
+			throw new IllegalArgumentException(name + " must be yyyy-mm-dd");
+		}
+	}
+
+	private static void require(boolean condition, String message){
+		if (!condition){
+			throw new IllegalArgumentException(message);
+		}
+	}
+}
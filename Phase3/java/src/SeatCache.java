@@ -0,0 +1,195 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * This class caches the seat availability of flights by flight number so that
+ * availability checks are answered without a database round trip.
+ *
+ * Entries are loaded on first use and evicted least recently used beyond the
+ * maximum size.  The booking path writes the num_sold it committed through to
+ * the cache unless a change was notified while it ran, since the notified
+ * value may be newer, and the triggers in create.sql NOTIFY every change on the
+ * flight_seats channel: "fnum num_sold" when only num_sold changed, "fnum"
+ * when the flight, its plane or its seats changed and the entry must be
+ * reloaded.  The bookings themselves never rely on the cache, so a check may
+ * briefly lag a concurrent booking but can never cause an oversell.
+ *
+ */
+
+public class SeatCache implements NotifyListener.Handler{
+	public static final String CHANNEL = "flight_seats";
+
+	/**
+	 * The seats of a flight's plane and the seats sold on it.
+	 */
+	public static final class Availability{
+		private final int _seats;
+		private final int _sold;
+		private final int _departureDay;
+
+		Availability(int seats, int sold, int departureDay){
+			this._seats = seats;
+			this._sold = sold;
+			this._departureDay = departureDay;
+		}
+
+		public int getSeats(){
+			return this._seats;
+		}
+
+		public int getSold(){
+			return this._sold;
+		}
+
+		public int getAvailable(){
+			return Math.max(0, this._seats - this._sold);
+		}
+
+		public boolean isFull(){
+			return this._sold >= this._seats;
+		}
+
+		// actual departure date as days since 1970-01-01
+		public int getDepartureDay(){
+			return this._departureDay;
+		}
+	}
+
+	private final DBproject _esql;
+	private final int _maxSize;
+	private final LinkedHashMap<Integer, Availability> _entries;
+	//bumped by every invalidation, a load racing one is not cached
+	private long _generation = 0;
+	private long _hits = 0;
+	private long _misses = 0;
+
+	public SeatCache(DBproject esql, int maxSize){
+		this._esql = esql;
+		this._maxSize = maxSize;
+		this._entries = new LinkedHashMap<Integer, Availability>(16, 0.75f, true){
+			protected boolean removeEldestEntry(Map.Entry<Integer, Availability> eldest){
+				return size() > SeatCache.this._maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the availability of a flight, loading it on a miss.
+	 *
+	 * @return the availability, or null if the flight has no plane assigned
+	 * @throws java.sql.SQLException when the flight could not be loaded
+	 */
+	public Availability get(int flightNumber) throws SQLException {
+		long generation;
+		synchronized (this){
+			Availability cached = this._entries.get(flightNumber);
+			if (cached != null){
+				this._hits++;
+				return cached;
+			}
+			this._misses++;
+			generation = this._generation;
+		}
+		Availability loaded = load(flightNumber);
+		synchronized (this){
+			if (loaded != null && generation == this._generation){
+				this._entries.put(flightNumber, loaded);
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * Returns the generation of the cache, which changes with every
+	 * notification; read it before a booking and pass it to sold().
+	 */
+	public synchronized long generation(){
+		return this._generation;
+	}
+
+	/**
+	 * Writes the num_sold committed by a booking through to the cache, unless
+	 * a change was notified since the generation was read.  The notified
+	 * num_sold may then be newer, and the booking's own notification brings
+	 * its value anyway.
+	 */
+	public synchronized void sold(int flightNumber, int numSold, long generation){
+		if (generation == this._generation){
+			set(flightNumber, numSold);
+		}
+	}
+
+	private synchronized void set(int flightNumber, int numSold){
+		Availability cached = this._entries.get(flightNumber);
+		if (cached != null){
+			this._entries.put(flightNumber, new Availability(cached._seats, numSold, cached._departureDay));
+		}
+	}
+
+	public synchronized void invalidate(int flightNumber){
+		this._generation++;
+		this._entries.remove(flightNumber);
+	}
+
+	public synchronized void clear(){
+		this._generation++;
+		this._entries.clear();
+	}
+
+	public void notified(String payload){
+		try{
+			int space = payload.indexOf(' ');
+			if (space < 0){
+				invalidate(Integer.parseInt(payload));
+			}
+			else {
+				int flightNumber = Integer.parseInt(payload.substring(0, space));
+				synchronized (this){
+					// a load in flight may have read the old value
+					this._generation++;
+					set(flightNumber, Integer.parseInt(payload.substring(space + 1)));
+				}
+			}
+		}catch (NumberFormatException e){
+			clear();
+		}
+	}
+
+	public void reset(){
+		clear();
+	}
+
+	public synchronized int size(){
+		return this._entries.size();
+	}
+
+	public synchronized long getHits(){
+		return this._hits;
+	}
+
+	public synchronized long getMisses(){
+		return this._misses;
+	}
+
+	private Availability load(int flightNumber) throws SQLException {
+		TypedResult result = this._esql.executeQueryAndReturnTyped(new TypedResult(), Queries.FLIGHT_SEATS_AND_SOLD, flightNumber);
+		if (result.isEmpty()){
+			return null;
+		}
+		return new Availability(result.getInt(0, "seats"), result.getInt(0, "num_sold"), result.getEpochDay(0, "actual_departure_date"));
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.URLDecoder;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This class serves the menu operations on a Unix domain socket, so that a
+ * script can call them through a resident, warmed up DBproject instead of
+ * starting a JVM and connecting on every call.  A request is one line, the
+ * operation followed by its arguments as name=value pairs, with the values
+ * URL encoded (a space as +), e.g.
+ *
+ *   BookFlight cid=94 fnum=769 status=C
+ *
+ * and the reply is one line of JSON, as from HttpService.  A connection may
+ * send any number of requests; they are answered in order.  Every
+ * connection runs on its own thread and at most as many requests as there
+ * are pooled connections run at once; the rest wait briefly and are refused.
+ * The socket file is only accessible to the user running the daemon, from
+ * the moment it appears.
+ *
+ */
+
+public class SocketService{
+	private final DBproject _esql;
+	private final Path _path;
+	private final ServerSocketChannel _server;
+	private final ExecutorService _executor;
+	private final Semaphore _permits;
+	private final long _queueTimeoutMillis;
+	private final Thread _acceptor;
+
+	public SocketService(DBproject esql, Path path, int maxConcurrency, long queueTimeoutMillis) throws IOException {
+		this._esql = esql;
+		this._path = path.toAbsolutePath();
+		this._permits = new Semaphore(maxConcurrency, true);
+		this._queueTimeoutMillis = queueTimeoutMillis;
+		// the file of a daemon that did not stop cleanly is left behind and must go before binding
+		if (Files.exists(this._path)){
+			if (inUse(this._path)){
+				throw new IOException(this._path + " is in use by another daemon");
+			}
+			Files.delete(this._path);
+		}
+		this._server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		bind(this._server, this._path);
+		this._executor = HttpService.newRequestExecutor("socket-worker");
+		this._acceptor = new Thread(this::accept, "socket-accept");
+		this._acceptor.setDaemon(true);
+	}
+
+	public void start(){
+		this._acceptor.start();
+	}
+
+	public void stop(){
+		try{
+			this._server.close();
+			Files.deleteIfExists(this._path);
+		}catch (IOException e){
+			// stopping anyway
+		}
+		this._executor.shutdownNow();
+	}
+
+	public Path getPath(){
+		return this._path;
+	}
+
+	//=========================================================================================================================================================================
+
+	private void accept(){
+		while (this._server.isOpen()){
+			try{
+				SocketChannel channel = this._server.accept();
+				this._executor.execute(() -> serve(channel));
+			}catch (ClosedChannelException e){
+				return;
+			}catch (IOException e){
+				System.err.println("Socket accept failed: " + e.getMessage());
+			}
+		}//end while
+	}
+
+	private void serve(SocketChannel channel){
+		try (SocketChannel c = channel){
+			BufferedReader reader = new BufferedReader(Channels.newReader(c, StandardCharsets.UTF_8));
+			Writer writer = new BufferedWriter(Channels.newWriter(c, StandardCharsets.UTF_8));
+			String line;
+			while ((line = reader.readLine()) != null){
+				line = line.trim();
+				if (line.isEmpty()){
+					continue;
+				}
+				writer.write(Json.write(handle(line)));
+				writer.write('\n');
+				writer.flush();
+			}//end while
+		}catch (IOException e){
+			// the client went away
+		}
+	}
+
+	private Map<String, Object> handle(String line){
+		Map<String, Object> response = new LinkedHashMap<String, Object>();
+		boolean acquired = false;
+		try{
+			String[] words = line.split("\\s+");
+			Map<String, String> args = parseArgs(words);
+			acquired = this._permits.tryAcquire(this._queueTimeoutMillis, TimeUnit.MILLISECONDS);
+			if (!acquired){
+				response.put("error", "too many concurrent requests");
+			}
+			else {
+				response.putAll(Operations.dispatch(this._esql, words[0], args));
+			}
+		}catch (IllegalArgumentException e){
+			response.put("error", e.getMessage());
+		}catch (SQLException e){
+			response.put("error", e.getMessage());
+			response.put("sqlstate", e.getSQLState());
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			response.put("error", "interrupted");
+		}finally{
+			if (acquired){
+				this._permits.release();
+			}
+		}
+		return response;
+	}
+
+	// the name=value pairs after the operation
+	private static Map<String, String> parseArgs(String[] words){
+		Map<String, String> args = new LinkedHashMap<String, String>();
+		for (int i = 1; i < words.length; i++){
+			int eq = words[i].indexOf('=');
+			if (eq <= 0){
+				throw new IllegalArgumentException("arguments must be name=value, not " + words[i]);
+			}
+			args.put(URLDecoder.decode(words[i].substring(0, eq), StandardCharsets.UTF_8),
+				URLDecoder.decode(words[i].substring(eq + 1), StandardCharsets.UTF_8));
+		}
+		return args;
+	}
+
+	/*
+	 * Binds the socket in a new directory only the owner can enter, makes the
+	 * socket file owner-only and then renames it into place, so no one else
+	 * can connect at any time, whatever the umask.
+	 */
+	private static void bind(ServerSocketChannel server, Path path) throws IOException {
+		Path directory;
+		try{
+			directory = Files.createTempDirectory(path.getParent(), ".dbproject",
+				PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+		}catch (UnsupportedOperationException e){
+			// not a POSIX file system, the directory's permissions apply
+			server.bind(UnixDomainSocketAddress.of(path), 1024);
+			return;
+		}
+		Path bound = directory.resolve("socket");
+		try{
+			server.bind(UnixDomainSocketAddress.of(bound), 1024);
+			Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString("rw-------"));
+			Files.move(bound, path, StandardCopyOption.ATOMIC_MOVE);
+		}finally{
+			Files.deleteIfExists(bound);
+			Files.delete(directory);
+		}
+	}
+
+	// whether a daemon is listening on the socket file
+	private static boolean inUse(Path path){
+		try{
+			SocketChannel.open(UnixDomainSocketAddress.of(path)).close();
+			return true;
+		}catch (IOException e){
+			return false;
+		}
+	}
+}
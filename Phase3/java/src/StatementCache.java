@@ -0,0 +1,110 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * This class keeps the prepared statements of one physical connection so that
+ * a statement shape is parsed and planned by the server only once.  Statements
+ * are kept in least-recently-used order and the eldest one is closed when the
+ * cache grows past its capacity.
+ *
+ */
+
+public class StatementCache{
+	//connection the statements were prepared on
+	private final Connection _connection;
+	private final int _capacity;
+	private final LinkedHashMap<String, PreparedStatement> _statements;
+	private long _hits = 0;
+	private long _misses = 0;
+	private long _evictions = 0;
+
+	public StatementCache(Connection connection, int capacity){
+		this._connection = connection;
+		this._capacity = capacity;
+		// access ordered so that the eldest entry is the least recently used one
+		this._statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true){
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest){
+				if (size() <= StatementCache.this._capacity){
+					return false;
+				}
+				closeQuietly(eldest.getValue());
+				StatementCache.this._evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Returns the prepared statement for the given SQL, preparing it on the
+	 * underlying connection the first time the shape is seen.
+	 *
+	 * @param sql the SQL string with '?' placeholders
+	 * @return a prepared statement with its parameters cleared
+	 * @throws java.sql.SQLException when the statement cannot be prepared
+	 */
+	public synchronized PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement stmt = this._statements.get(sql);
+		if (stmt != null && !stmt.isClosed()){
+			this._hits++;
+			stmt.clearParameters();
+			return stmt;
+		}
+		this._misses++;
+		stmt = this._connection.prepareStatement(sql);
+		this._statements.put(sql, stmt);
+		return stmt;
+	}
+
+	/**
+	 * Closes every cached statement.  The connection itself is left open.
+	 */
+	public synchronized void close(){
+		Iterator<PreparedStatement> it = this._statements.values().iterator();
+		while (it.hasNext()){
+			closeQuietly(it.next());
+		}
+		this._statements.clear();
+	}
+
+	public synchronized int size(){
+		return this._statements.size();
+	}
+
+	public synchronized long getHits(){
+		return this._hits;
+	}
+
+	public synchronized long getMisses(){
+		return this._misses;
+	}
+
+	public synchronized long getEvictions(){
+		return this._evictions;
+	}
+
+	private static void closeQuietly(PreparedStatement stmt){
+		try{
+			stmt.close();
+		}catch (SQLException e){
+			// ignored.
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+
+/**
+ * This class holds a query result column by column in primitive arrays:
+ * integer columns as int, bigint columns (e.g. COUNT(*)) as long, dates as
+ * int days since 1970-01-01, and everything else as String.  Values are read
+ * without converting them to text first, and the arrays are kept and reused
+ * by the next load, so repeated lookups allocate nothing but the strings of
+ * text columns.  A result is not thread safe; each thread keeps its own.
+ *
+ */
+
+public class TypedResult{
+
+	public enum ColumnType{
+		INT, LONG, DATE, STRING
+	}
+
+	private int _rowCount = 0;
+	private int _columnCount = 0;
+	private int _capacity = 0;
+	private String[] _names = new String[0];
+	private ColumnType[] _types = new ColumnType[0];
+	//one array per column, only the one matching the column type is set
+	private int[][] _ints = new int[0][];
+	private long[][] _longs = new long[0][];
+	private String[][] _strings = new String[0][];
+	private boolean[][] _nulls = new boolean[0][];
+
+	/**
+	 * Replaces the content with the rows of the result set.
+	 *
+	 * @return the number of rows read
+	 */
+	public int load(ResultSet rs) throws SQLException {
+		ResultSetMetaData rsmd = rs.getMetaData();
+		int numCol = rsmd.getColumnCount();
+		if (numCol != this._columnCount){
+			resize(numCol);
+		}
+		for (int c = 0; c < numCol; c++){
+			this._names[c] = rsmd.getColumnLabel(c + 1);
+			ColumnType type = typeOf(rsmd.getColumnType(c + 1));
+			if (type != this._types[c]){
+				this._types[c] = type;
+				allocate(c, this._capacity);
+			}
+		}
+
+		int row = 0;
+		while (rs.next()){
+			if (row == this._capacity){
+				grow();
+			}
+			for (int c = 0; c < numCol; c++){
+				int i = c + 1;
+				switch (this._types[c]){
+					case INT:
+						this._ints[c][row] = rs.getInt(i);
+						break;
+					case LONG:
+						this._longs[c][row] = rs.getLong(i);
+						break;
+					case DATE:
+						Date date = rs.getDate(i);
+						this._ints[c][row] = date == null ? 0 : (int) date.toLocalDate().toEpochDay();
+						break;
+					default:
+						this._strings[c][row] = rs.getString(i);
+				}
+				this._nulls[c][row] = rs.wasNull();
+			}
+			row++;
+		}
+		// drop references to the previous strings beyond the new end
+		for (int c = 0; c < numCol; c++){
+			if (this._types[c] == ColumnType.STRING){
+				for (int r = row; r < this._rowCount; r++){
+					this._strings[c][r] = null;
+				}
+			}
+		}
+		this._rowCount = row;
+		return row;
+	}
+
+	public int size(){
+		return this._rowCount;
+	}
+
+	public boolean isEmpty(){
+		return this._rowCount == 0;
+	}
+
+	public int getColumnCount(){
+		return this._columnCount;
+	}
+
+	public String getColumnName(int column){
+		return this._names[column];
+	}
+
+	public ColumnType getColumnType(int column){
+		return this._types[column];
+	}
+
+	/**
+	 * Returns the index of a column by its name, ignoring case.
+	 *
+	 * @throws IllegalArgumentException when the result has no such column
+	 */
+	public int columnIndex(String name){
+		for (int c = 0; c < this._columnCount; c++){
+			if (this._names[c].equalsIgnoreCase(name)){
+				return c;
+			}
+		}
+		throw new IllegalArgumentException("No column " + name + " in the result");
+	}
+
+	public boolean isNull(int row, int column){
+		checkRow(row);
+		return this._nulls[column][row];
+	}
+
+	public int getInt(int row, int column){
+		checkRow(row);
+		switch (this._types[column]){
+			case INT:
+			case DATE:
+				return this._ints[column][row];
+			case LONG:
+				return Math.toIntExact(this._longs[column][row]);
+			default:
+				return Integer.parseInt(this._strings[column][row].trim());
+		}
+	}
+
+	public long getLong(int row, int column){
+		checkRow(row);
+		switch (this._types[column]){
+			case INT:
+			case DATE:
+				return this._ints[column][row];
+			case LONG:
+				return this._longs[column][row];
+			default:
+				return Long.parseLong(this._strings[column][row].trim());
+		}
+	}
+
+	/**
+	 * Returns a date column as days since 1970-01-01.
+	 */
+	public int getEpochDay(int row, int column){
+		checkRow(row);
+		if (this._types[column] != ColumnType.DATE){
+			throw new IllegalArgumentException("Column " + this._names[column] + " is not a date");
+		}
+		return this._ints[column][row];
+	}
+
+	public String getString(int row, int column){
+		checkRow(row);
+		if (this._nulls[column][row]){
+			return null;
+		}
+		switch (this._types[column]){
+			case INT:
+				return Integer.toString(this._ints[column][row]);
+			case LONG:
+				return Long.toString(this._longs[column][row]);
+			case DATE:
+				return LocalDate.ofEpochDay(this._ints[column][row]).toString();
+			default:
+				return this._strings[column][row];
+		}
+	}
+
+	public int getInt(int row, String column){
+		return getInt(row, columnIndex(column));
+	}
+
+	public long getLong(int row, String column){
+		return getLong(row, columnIndex(column));
+	}
+
+	public int getEpochDay(int row, String column){
+		return getEpochDay(row, columnIndex(column));
+	}
+
+	public String getString(int row, String column){
+		return getString(row, columnIndex(column));
+	}
+
+	public boolean isNull(int row, String column){
+		return isNull(row, columnIndex(column));
+	}
+
+	private static ColumnType typeOf(int sqlType){
+		switch (sqlType){
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+				return ColumnType.INT;
+			case Types.BIGINT:
+				return ColumnType.LONG;
+			case Types.DATE:
+				return ColumnType.DATE;
+			default:
+				return ColumnType.STRING;
+		}
+	}
+
+	private void checkRow(int row){
+		if (row < 0 || row >= this._rowCount){
+			throw new IndexOutOfBoundsException("Row " + row + " of a result with " + this._rowCount + " rows");
+		}
+	}
+
+	private void resize(int numCol){
+		this._columnCount = numCol;
+		this._names = new String[numCol];
+		this._types = new ColumnType[numCol];
+		this._ints = new int[numCol][];
+		this._longs = new long[numCol][];
+		this._strings = new String[numCol][];
+		this._nulls = new boolean[numCol][];
+		this._rowCount = 0;
+	}
+
+	private void allocate(int column, int capacity){
+		this._ints[column] = null;
+		this._longs[column] = null;
+		this._strings[column] = null;
+		switch (this._types[column]){
+			case INT:
+			case DATE:
+				this._ints[column] = new int[capacity];
+				break;
+			case LONG:
+				this._longs[column] = new long[capacity];
+				break;
+			default:
+				this._strings[column] = new String[capacity];
+		}
+		this._nulls[column] = new boolean[capacity];
+	}
+
+	private void grow(){
+		int capacity = Math.max(8, this._capacity * 2);
+		for (int c = 0; c < this._columnCount; c++){
+			if (this._ints[c] != null) this._ints[c] = Arrays.copyOf(this._ints[c], capacity);
+			if (this._longs[c] != null) this._longs[c] = Arrays.copyOf(this._longs[c], capacity);
+			if (this._strings[c] != null) this._strings[c] = Arrays.copyOf(this._strings[c], capacity);
+			this._nulls[c] = Arrays.copyOf(this._nulls[c], capacity);
+		}
+		this._capacity = capacity;
+	}
+}
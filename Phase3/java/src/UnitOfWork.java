@@ -0,0 +1,77 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * This class collects related writes and runs them together in a single
+ * transaction with a single commit, e.g.
+ *
+ *   esql.newUnitOfWork()
+ *       .add(Queries.INSERT_FLIGHT, ...)
+ *       .add(Queries.INSERT_FLIGHT_INFO, ...)
+ *       .commit();
+ *
+ * Consecutive statements with the same SQL are sent as one JDBC batch, so
+ * adding many rows of each table in table order costs one round trip per
+ * table.  Either every statement is applied or, on any failure, none is.
+ *
+ */
+
+public class UnitOfWork{
+	private final DBproject _esql;
+	private final List<String> _statements = new ArrayList<String>();
+	private final List<Object[]> _params = new ArrayList<Object[]>();
+
+	UnitOfWork(DBproject esql){
+		this._esql = esql;
+	}
+
+	/**
+	 * Adds a write to the unit.
+	 *
+	 * @param sql the statement with '?' placeholders
+	 * @param params the values bound to the placeholders, in order
+	 * @return this unit, for chaining
+	 */
+	public UnitOfWork add(String sql, Object... params){
+		this._statements.add(sql);
+		this._params.add(params);
+		return this;
+	}
+
+	public int size(){
+		return this._statements.size();
+	}
+
+	public boolean isEmpty(){
+		return this._statements.isEmpty();
+	}
+
+	/**
+	 * Runs every write in one transaction and empties the unit.
+	 *
+	 * @return the number of rows affected by each write, in the order added
+	 * @throws java.sql.SQLException when a write failed; nothing is applied
+	 */
+	public int[] commit() throws SQLException {
+		try{
+			return this._esql.executeUnitOfWork(this._statements, this._params);
+		}finally{
+			this._statements.clear();
+			this._params.clear();
+		}
+	}
+}
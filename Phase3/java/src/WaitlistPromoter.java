@@ -0,0 +1,198 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * This class fills the seats that free up on a flight from its waitlist.  It
+ * listens to the same flight_seats notifications as the seat cache, which
+ * are sent on every change of a flight, bookings included.  A flight is
+ * queued only when its num_sold drops below the last one seen (a
+ * cancellation) or when it must be reloaded (e.g. a different plane), so
+ * bookings do not lock the flight row again.  Each queued flight with open
+ * seats has its oldest waitlisted reservations promoted in one statement.
+ *
+ * Flights are spread over a number of lanes, each a single thread, so the
+ * promotions of one flight run one after another while different flights
+ * are promoted in parallel.  A flight already queued is not queued twice.
+ * After every (re)connect of the listener all flights with a waitlist are
+ * checked, since notifications may have been missed.
+ *
+ *   java WaitlistPromoter <dbname> <port> <user>
+ *
+ * Settings: dbproject.waitlist.threads (lanes; 0 leaves DBproject without a
+ * promoter, 4 when run on its own) and dbproject.waitlist.promoteTo (status
+ * given to promoted reservations, R).
+ *
+ */
+
+public class WaitlistPromoter implements NotifyListener.Handler{
+	private final DBproject _esql;
+	private final String _promoteTo;
+	private final ExecutorService[] _lanes;
+	// flights waiting in a lane
+	private final Set<Integer> _queued = ConcurrentHashMap.newKeySet();
+	// num_sold of the last notification of each flight
+	private final Map<Integer, Integer> _lastSold = new ConcurrentHashMap<Integer, Integer>();
+	private final LongAdder _promoted = new LongAdder();
+
+	public WaitlistPromoter(DBproject esql, int lanes, String promoteTo){
+		if (!"C".equals(promoteTo) && !"R".equals(promoteTo)){
+			throw new IllegalArgumentException("waitlisted reservations can only be promoted to C or R");
+		}
+		this._esql = esql;
+		this._promoteTo = promoteTo;
+		this._lanes = new ExecutorService[lanes];
+		for (int i = 0; i < lanes; i++){
+			String name = "waitlist-" + i;
+			this._lanes[i] = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, name);
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 3){
+			System.err.println("Usage: java [-classpath <classpath>] " + WaitlistPromoter.class.getName() + " <dbname> <port> <user>");
+			return;
+		}
+		if (System.getProperty("dbproject.waitlist.threads") == null){
+			System.setProperty("dbproject.waitlist.threads", "4");
+		}
+		if (System.getProperty("dbproject.pool.maxSize") == null){
+			System.setProperty("dbproject.pool.maxSize", System.getProperty("dbproject.waitlist.threads"));
+		}
+		Class.forName("org.postgresql.Driver");
+		DBproject esql = new DBproject(args[0], args[1], args[2], "");
+		if (esql.getWaitlistPromoter() == null){
+			System.err.println("dbproject.waitlist.threads must be at least 1");
+			esql.cleanup();
+			return;
+		}
+		System.out.println("Promoting waitlisted reservations (Ctrl-C to stop)");
+
+		Thread main = Thread.currentThread();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			esql.cleanup();
+			main.interrupt();
+		}));
+		try{
+			Thread.currentThread().join();
+		}catch (InterruptedException e){
+			// shutting down
+		}
+	}
+
+	/**
+	 * Queues the flight of a flight_seats notification, "fnum" when the
+	 * flight must be reloaded, or "fnum num_sold" when num_sold dropped or
+	 * was not seen before.
+	 */
+	public void notified(String payload){
+		int end = payload.indexOf(' ');
+		try{
+			if (end < 0){
+				int flightNumber = Integer.parseInt(payload);
+				this._lastSold.remove(flightNumber);
+				submit(flightNumber);
+				return;
+			}
+			int flightNumber = Integer.parseInt(payload.substring(0, end));
+			int sold = Integer.parseInt(payload.substring(end + 1));
+			// notifications come in commit order, so a booking never lowers num_sold
+			Integer last = this._lastSold.put(flightNumber, sold);
+			if (last == null || sold < last){
+				submit(flightNumber);
+			}
+		}catch (NumberFormatException e){
+			// not a flight
+		}
+	}
+
+	/**
+	 * Queues every flight that has a waitlist.
+	 */
+	public void reset(){
+		this._lastSold.clear();
+		this._lanes[0].execute(() -> {
+			try{
+				TypedResult flights = this._esql.executeQueryAndReturnTyped(new TypedResult(), Queries.WAITLISTED_FLIGHTS);
+				for (int i = 0; i < flights.size(); i++){
+					submit(flights.getInt(i, 0));
+				}
+			}catch (SQLException e){
+				System.err.println("Unable to list the waitlisted flights: " + e.getMessage());
+			}
+		});
+	}
+
+	/**
+	 * Queues a flight in its lane unless it is queued already.
+	 */
+	public void submit(int flightNumber){
+		if (!this._queued.add(flightNumber)){
+			return;
+		}
+		try{
+			this._lanes[Math.floorMod(flightNumber, this._lanes.length)].execute(() -> {
+				// changes from here on queue the flight again
+				this._queued.remove(flightNumber);
+				promote(flightNumber);
+			});
+		}catch (RuntimeException e){
+			// shutting down
+			this._queued.remove(flightNumber);
+		}
+	}
+
+	private void promote(int flightNumber){
+		try{
+			// most notifications are bookings of flights with no seat left
+			SeatCache.Availability availability = this._esql.getSeatCache().get(flightNumber);
+			if (availability == null || availability.isFull()){
+				return;
+			}
+			this._promoted.add(Operations.promoteWaitlist(this._esql, flightNumber, this._promoteTo));
+		}catch (SQLException e){
+			// the next change of the flight retries it
+			System.err.println("Unable to promote the waitlist of flight " + flightNumber + ": " + e.getMessage());
+		}
+	}
+
+	public long getPromoted(){
+		return this._promoted.sum();
+	}
+
+	public void close(){
+		for (ExecutorService lane : this._lanes){
+			lane.shutdown();
+		}
+		for (ExecutorService lane : this._lanes){
+			try{
+				lane.awaitTermination(5, TimeUnit.SECONDS);
+			}catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,200 @@
+-----------------
+---CONSTRAINTS---
+-----------------
+-- Added after the data is loaded, which is much faster than checking every
+-- row on insert. Primary keys first, the foreign keys need them.
+ALTER TABLE Customer ADD PRIMARY KEY (id);
+ALTER TABLE Pilot ADD PRIMARY KEY (id);
+ALTER TABLE Flight ADD PRIMARY KEY (fnum);
+ALTER TABLE Plane ADD PRIMARY KEY (id);
+ALTER TABLE Technician ADD PRIMARY KEY (id);
+ALTER TABLE Reservation ADD PRIMARY KEY (rnum);
+ALTER TABLE FlightInfo ADD PRIMARY KEY (fiid);
+ALTER TABLE Repairs ADD PRIMARY KEY (rid);
+ALTER TABLE Schedule ADD PRIMARY KEY (id);
+ALTER TABLE RepairsPerPlane ADD PRIMARY KEY (plane_id);
+ALTER TABLE RepairsPerYear ADD PRIMARY KEY (year);
+
+ALTER TABLE Reservation
+	ADD FOREIGN KEY (cid) REFERENCES Customer(id),
+	ADD FOREIGN KEY (fid) REFERENCES Flight(fnum);
+ALTER TABLE FlightInfo
+	ADD FOREIGN KEY (flight_id) REFERENCES Flight(fnum),
+	ADD FOREIGN KEY (pilot_id) REFERENCES Pilot(id),
+	ADD FOREIGN KEY (plane_id) REFERENCES Plane(id);
+ALTER TABLE Repairs
+	ADD FOREIGN KEY (pilot_id) REFERENCES Pilot(id),
+	ADD FOREIGN KEY (plane_id) REFERENCES Plane(id),
+	ADD FOREIGN KEY (technician_id) REFERENCES Technician(id);
+ALTER TABLE Schedule
+	ADD FOREIGN KEY (flightNum) REFERENCES Flight(fnum);
+ALTER TABLE RepairsPerPlane
+	ADD FOREIGN KEY (plane_id) REFERENCES Plane(id) ON DELETE CASCADE;
+
+-------------
+---INDEXES---
+-------------
+-- Secondary indexes for the predicates of the operations (see PlanCheck)
+CREATE INDEX reservation_cid_fid ON Reservation (cid, fid);--BookFlight
+CREATE INDEX reservation_fid_status ON Reservation (fid, status);--FindPassengersCountWithStatus
+CREATE INDEX reservation_waitlist ON Reservation (fid, booked_at, rnum) WHERE status = 'W';--WaitlistPromoter
+CREATE INDEX flightinfo_flight_id ON FlightInfo (flight_id);--isFlightFull, booking
+CREATE INDEX flightinfo_plane_id ON FlightInfo (plane_id);--plane_seats_changed
+CREATE INDEX repairs_plane_id ON Repairs (plane_id);--Plane deletes
+CREATE INDEX flight_departure_date ON Flight (actual_departure_date);--ListNumberOfAvailableSeats
+CREATE INDEX schedule_flightnum ON Schedule (flightNum);
+ANALYZE;
+
+-- Start the hi values above the loaded ids
+SELECT setval('reservation_rnum_hi', (SELECT COALESCE(MAX(rnum), 0) FROM Reservation) / 100 + 1, false);
+SELECT setval('flightinfo_fiid_hi', (SELECT COALESCE(MAX(fiid), 0) FROM FlightInfo) / 100 + 1, false);
+SELECT setval('schedule_id_hi', (SELECT COALESCE(MAX(id), 0) FROM Schedule) / 100 + 1, false);
+
+--------------
+---TRIGGERS---
+--------------
+-- Tell the clients' seat caches (SeatCache) and route graphs (RouteGraph)
+-- which flights changed. The payload is 'fnum num_sold' when only num_sold
+-- changed and 'fnum' when the cached entry must be reloaded. Created after the load so that loading
+-- does not notify.
+CREATE OR REPLACE FUNCTION notify_flight_seats() RETURNS TRIGGER AS $$
+BEGIN
+	IF TG_TABLE_NAME = 'flight' THEN
+		IF TG_OP = 'UPDATE' AND NEW.fnum = OLD.fnum
+			AND NEW.actual_departure_date = OLD.actual_departure_date THEN
+			PERFORM pg_notify('flight_seats', NEW.fnum || ' ' || NEW.num_sold);
+		ELSIF TG_OP = 'DELETE' THEN
+			PERFORM pg_notify('flight_seats', OLD.fnum::text);
+		ELSE
+			PERFORM pg_notify('flight_seats', NEW.fnum::text);
+			IF TG_OP = 'UPDATE' AND NEW.fnum <> OLD.fnum THEN
+				PERFORM pg_notify('flight_seats', OLD.fnum::text);
+			END IF;
+		END IF;
+	ELSIF TG_TABLE_NAME = 'flightinfo' THEN
+		IF TG_OP <> 'DELETE' THEN
+			PERFORM pg_notify('flight_seats', NEW.flight_id::text);
+		END IF;
+		IF TG_OP <> 'INSERT' THEN
+			PERFORM pg_notify('flight_seats', OLD.flight_id::text);
+		END IF;
+	ELSIF TG_TABLE_NAME = 'schedule' THEN
+		IF TG_OP <> 'DELETE' THEN
+			PERFORM pg_notify('flight_seats', NEW.flightNum::text);
+		END IF;
+		IF TG_OP <> 'INSERT' THEN
+			PERFORM pg_notify('flight_seats', OLD.flightNum::text);
+		END IF;
+	ELSE -- plane
+		PERFORM pg_notify('flight_seats', FI.flight_id::text)
+		FROM FlightInfo FI WHERE FI.plane_id = NEW.id;
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER flight_seats_changed AFTER INSERT OR UPDATE OR DELETE ON Flight
+	FOR EACH ROW EXECUTE PROCEDURE notify_flight_seats();
+CREATE TRIGGER flightinfo_seats_changed AFTER INSERT OR UPDATE OR DELETE ON FlightInfo
+	FOR EACH ROW EXECUTE PROCEDURE notify_flight_seats();
+CREATE TRIGGER schedule_times_changed AFTER INSERT OR UPDATE OR DELETE ON Schedule
+	FOR EACH ROW EXECUTE PROCEDURE notify_flight_seats();
+CREATE TRIGGER plane_seats_changed AFTER UPDATE OF seats ON Plane
+	FOR EACH ROW EXECUTE PROCEDURE notify_flight_seats();
+
+-- Tell the clients' reservation indexes (ReservationIndex) which
+-- reservations changed. The payload is 'rnum cid fid status' for a new or
+-- changed reservation and 'rnum' for a removed one.
+CREATE OR REPLACE FUNCTION notify_reservations() RETURNS TRIGGER AS $$
+BEGIN
+	IF TG_OP = 'DELETE' THEN
+		PERFORM pg_notify('reservations', OLD.rnum::text);
+	ELSE
+		IF TG_OP = 'UPDATE' AND NEW.rnum <> OLD.rnum THEN
+			PERFORM pg_notify('reservations', OLD.rnum::text);
+		END IF;
+		PERFORM pg_notify('reservations', NEW.rnum || ' ' || NEW.cid || ' ' || NEW.fid || ' ' || COALESCE(NEW.status, '-'));
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER reservations_changed AFTER INSERT OR DELETE OR UPDATE OF rnum, cid, fid, status ON Reservation
+	FOR EACH ROW EXECUTE PROCEDURE notify_reservations();
+
+-- Refuse a second reservation of a customer on a flight. BookFlight checks
+-- this itself, but two concurrent bookings both pass that check; locking the
+-- flight row first makes them take turns, and the check below, which sees
+-- what was committed meanwhile, stops the second one. A unique index cannot
+-- be used because the sample data has duplicate reservations.
+CREATE OR REPLACE FUNCTION check_reservation_unique() RETURNS TRIGGER AS $$
+BEGIN
+	PERFORM 1 FROM Flight F WHERE F.fnum = NEW.fid FOR UPDATE;
+	IF EXISTS (SELECT 1 FROM Reservation R WHERE R.cid = NEW.cid AND R.fid = NEW.fid) THEN
+		RAISE EXCEPTION 'customer % already has a reservation on flight %', NEW.cid, NEW.fid
+			USING ERRCODE = 'unique_violation';
+	END IF;
+	RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER reservation_unique BEFORE INSERT ON Reservation
+	FOR EACH ROW EXECUTE PROCEDURE check_reservation_unique();
+
+-- Tell the clients' result caches (ResultCache) which tables were written,
+-- once per statement. Tables written by a trigger send their own.
+CREATE OR REPLACE FUNCTION notify_table_changes() RETURNS TRIGGER AS $$
+BEGIN
+	PERFORM pg_notify('table_changes', lower(TG_TABLE_NAME));
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_written AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON Customer
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_table_changes();
+CREATE TRIGGER pilot_written AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON Pilot
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_table_changes();
+CREATE TRIGGER flight_written AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON Flight
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_table_changes();
+CREATE TRIGGER plane_written AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON Plane
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_table_changes();
+CREATE TRIGGER technician_written AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON Technician
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_table_changes();
+CREATE TRIGGER reservation_written AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON Reservation
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_table_changes();
+CREATE TRIGGER flightinfo_written AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON FlightInfo
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_table_changes();
+CREATE TRIGGER repairs_written AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON Repairs
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_table_changes();
+CREATE TRIGGER schedule_written AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON Schedule
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_table_changes();
+CREATE TRIGGER repairsperplane_written AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON RepairsPerPlane
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_table_changes();
+CREATE TRIGGER repairsperyear_written AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON RepairsPerYear
+	FOR EACH STATEMENT EXECUTE PROCEDURE notify_table_changes();
+
+-- Count the loaded repairs, then keep the counts as repairs are added,
+-- changed and removed
+INSERT INTO RepairsPerPlane (plane_id, num_repairs)
+	SELECT R.plane_id, COUNT(*) FROM Repairs R GROUP BY R.plane_id;
+INSERT INTO RepairsPerYear (year, num_repairs)
+	SELECT EXTRACT(YEAR FROM R.repair_date), COUNT(*) FROM Repairs R GROUP BY EXTRACT(YEAR FROM R.repair_date);
+
+CREATE OR REPLACE FUNCTION count_repairs() RETURNS TRIGGER AS $$
+BEGIN
+	IF TG_OP <> 'INSERT' THEN
+		UPDATE RepairsPerPlane SET num_repairs = num_repairs - 1 WHERE plane_id = OLD.plane_id;
+		UPDATE RepairsPerYear SET num_repairs = num_repairs - 1 WHERE year = EXTRACT(YEAR FROM OLD.repair_date);
+	END IF;
+	IF TG_OP <> 'DELETE' THEN
+		INSERT INTO RepairsPerPlane (plane_id, num_repairs) VALUES (NEW.plane_id, 1)
+			ON CONFLICT (plane_id) DO UPDATE SET num_repairs = RepairsPerPlane.num_repairs + 1;
+		INSERT INTO RepairsPerYear (year, num_repairs) VALUES (EXTRACT(YEAR FROM NEW.repair_date), 1)
+			ON CONFLICT (year) DO UPDATE SET num_repairs = RepairsPerYear.num_repairs + 1;
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER repairs_counted AFTER INSERT OR DELETE OR UPDATE OF plane_id, repair_date ON Repairs
+	FOR EACH ROW EXECUTE PROCEDURE count_repairs();
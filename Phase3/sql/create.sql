@@ -1,132 +1,7 @@
-DROP TABLE IF EXISTS Customer CASCADE;--OK
-DROP TABLE IF EXISTS Flight CASCADE;--OK
-DROP TABLE IF EXISTS Pilot CASCADE;--OK
-DROP TABLE IF EXISTS Plane CASCADE;--OK
-DROP TABLE IF EXISTS Technician CASCADE;--OK
-
-DROP TABLE IF EXISTS Reservation CASCADE;--OK
-DROP TABLE IF EXISTS FlightInfo CASCADE;--OK
-DROP TABLE IF EXISTS Repairs CASCADE;--OK
-DROP TABLE IF EXISTS Schedule CASCADE;--OK
-
--------------
----DOMAINS---
--------------
-CREATE DOMAIN us_postal_code AS TEXT CHECK(VALUE ~ '^\d{5}$' OR VALUE ~ '^\d{5}-\d{4}$');
-CREATE DOMAIN _STATUS CHAR(1) CHECK (value IN ( 'W' , 'C', 'R' ) );
-CREATE DOMAIN _GENDER CHAR(1) CHECK (value IN ( 'F' , 'M' ) );
-CREATE DOMAIN _CODE CHAR(2) CHECK (value IN ( 'MJ' , 'MN', 'SV' ) ); --Major, Minimum, Service
-CREATE DOMAIN _PINTEGER AS int4 CHECK(VALUE > 0);
-CREATE DOMAIN _PZEROINTEGER AS int4 CHECK(VALUE >= 0);
-CREATE DOMAIN _YEAR_1970 AS int4 CHECK(VALUE >= 0);
-CREATE DOMAIN _SEATS AS int4 CHECK(VALUE > 0 AND VALUE < 500);--Plane Seats
-
-------------
----TABLES---
-------------
-CREATE TABLE Customer
-(
-	id INTEGER NOT NULL,
-	fname CHAR(24) NOT NULL,
-	lname CHAR(24) NOT NULL,
-	gtype _GENDER NOT NULL,
-	dob DATE NOT NULL,
-	address CHAR(256),
-	phone CHAR(10),
-	zipcode char(10),
-	PRIMARY KEY (id)
-);
-
-CREATE TABLE Pilot
-(
-	id INTEGER NOT NULL,
-	fullname CHAR(128),
-	nationality CHAR(24),
-	PRIMARY KEY (id)
-);
-
-CREATE TABLE Flight
-(
-	fnum INTEGER NOT NULL,
-	cost _PINTEGER NOT NULL,
-	num_sold _PZEROINTEGER NOT NULL,
-	num_stops _PZEROINTEGER NOT NULL,
-	actual_departure_date DATE NOT NULL,
-	actual_arrival_date DATE NOT NULL,
-	arrival_airport CHAR(5) NOT NULL,-- AIRPORT CODE --
-	departure_airport CHAR(5) NOT NULL,-- AIRPORT CODE --
-	PRIMARY KEY (fnum)
-);
-
-CREATE TABLE Plane
-(
-	id INTEGER NOT NULL,
-	make CHAR(32) NOT NULL,
-	model CHAR(64) NOT NULL,
-	age _YEAR_1970 NOT NULL,
-	seats _SEATS NOT NULL,
-	PRIMARY KEY (id)
-);
-
-CREATE TABLE Technician
-(
-	id INTEGER NOT NULL,
-	full_name CHAR(128) NOT NULL,
-	PRIMARY KEY (id)
-);
-
----------------
----RELATIONS---
----------------
-
-CREATE TABLE Reservation
-(
-	rnum INTEGER NOT NULL,
-	cid INTEGER NOT NULL,
-	fid INTEGER NOT NULL,
-	status _STATUS,
-	PRIMARY KEY (rnum),
-	FOREIGN KEY (cid) REFERENCES Customer(id),
-	FOREIGN KEY (fid) REFERENCES Flight(fnum)
-);
-
--- Adds Serial to automatically increment Id
-CREATE TABLE FlightInfo
-(
-	fiid INTEGER NOT NULL,
-	flight_id INTEGER NOT NULL,
-	pilot_id INTEGER NOT NULL,
-	plane_id INTEGER NOT NULL,
-	PRIMARY KEY (fiid),
-	FOREIGN KEY (flight_id) REFERENCES Flight(fnum),
-	FOREIGN KEY (pilot_id) REFERENCES Pilot(id),
-	FOREIGN KEY (plane_id) REFERENCES Plane(id)
-);
-
-CREATE TABLE Repairs
-(
-	rid INTEGER NOT NULL,
-	repair_date DATE NOT NULL,
-	repair_code _CODE,
-	pilot_id INTEGER NOT NULL,
-	plane_id INTEGER NOT NULL,
-	technician_id INTEGER NOT NULL,
-	PRIMARY KEY (rid),
-	FOREIGN KEY (pilot_id) REFERENCES Pilot(id),
-	FOREIGN KEY (plane_id) REFERENCES Plane(id),
-	FOREIGN KEY (technician_id) REFERENCES Technician(id)
-);
-
--- Adds Serial to automatically increment Id
-CREATE TABLE Schedule
-(
-	id INTEGER NOT NULL,
-	flightNum INTEGER NOT NULL,
-	departure_time DATE NOT NULL,
-	arrival_time DATE NOT NULL,
-	PRIMARY KEY (id),
-	FOREIGN KEY (flightNum) REFERENCES Flight(fnum)
-);
+-- Creates the schema and loads the CSVs with server side COPY, so the files
+-- must be readable by the server (see postgresql/createPostgreDB.sh). The
+-- BulkLoader program streams them from the client instead.
+\ir schema.sql
 
 ----------------------------
 -- INSERT DATA STATEMENTS --
@@ -220,3 +95,5 @@ COPY Schedule (
 )
 FROM 'schedule.csv'
 WITH DELIMITER ',';
+
+\ir constraints.sql
@@ -0,0 +1,145 @@
+DROP TABLE IF EXISTS Customer CASCADE;--OK
+DROP TABLE IF EXISTS Flight CASCADE;--OK
+DROP TABLE IF EXISTS Pilot CASCADE;--OK
+DROP TABLE IF EXISTS Plane CASCADE;--OK
+DROP TABLE IF EXISTS Technician CASCADE;--OK
+
+DROP TABLE IF EXISTS Reservation CASCADE;--OK
+DROP TABLE IF EXISTS FlightInfo CASCADE;--OK
+DROP TABLE IF EXISTS Repairs CASCADE;--OK
+DROP TABLE IF EXISTS Schedule CASCADE;--OK
+
+DROP TABLE IF EXISTS RepairsPerPlane CASCADE;--OK
+DROP TABLE IF EXISTS RepairsPerYear CASCADE;--OK
+
+DROP SEQUENCE IF EXISTS reservation_rnum_hi;--OK
+DROP SEQUENCE IF EXISTS flightinfo_fiid_hi;--OK
+DROP SEQUENCE IF EXISTS schedule_id_hi;--OK
+
+-------------
+---DOMAINS---
+-------------
+CREATE DOMAIN us_postal_code AS TEXT CHECK(VALUE ~ '^\d{5}$' OR VALUE ~ '^\d{5}-\d{4}$');
+CREATE DOMAIN _STATUS CHAR(1) CHECK (value IN ( 'W' , 'C', 'R' ) );
+CREATE DOMAIN _GENDER CHAR(1) CHECK (value IN ( 'F' , 'M' ) );
+CREATE DOMAIN _CODE CHAR(2) CHECK (value IN ( 'MJ' , 'MN', 'SV' ) ); --Major, Minimum, Service
+CREATE DOMAIN _PINTEGER AS int4 CHECK(VALUE > 0);
+CREATE DOMAIN _PZEROINTEGER AS int4 CHECK(VALUE >= 0);
+CREATE DOMAIN _YEAR_1970 AS int4 CHECK(VALUE >= 0);
+CREATE DOMAIN _SEATS AS int4 CHECK(VALUE > 0 AND VALUE < 500);--Plane Seats
+
+------------
+---TABLES---
+------------
+CREATE TABLE Customer
+(
+	id INTEGER NOT NULL,
+	fname CHAR(24) NOT NULL,
+	lname CHAR(24) NOT NULL,
+	gtype _GENDER NOT NULL,
+	dob DATE NOT NULL,
+	address CHAR(256),
+	phone CHAR(10),
+	zipcode char(10)
+);
+
+CREATE TABLE Pilot
+(
+	id INTEGER NOT NULL,
+	fullname CHAR(128),
+	nationality CHAR(24)
+);
+
+CREATE TABLE Flight
+(
+	fnum INTEGER NOT NULL,
+	cost _PINTEGER NOT NULL,
+	num_sold _PZEROINTEGER NOT NULL,
+	num_stops _PZEROINTEGER NOT NULL,
+	actual_departure_date DATE NOT NULL,
+	actual_arrival_date DATE NOT NULL,
+	arrival_airport CHAR(5) NOT NULL,-- AIRPORT CODE --
+	departure_airport CHAR(5) NOT NULL -- AIRPORT CODE --
+);
+
+CREATE TABLE Plane
+(
+	id INTEGER NOT NULL,
+	make CHAR(32) NOT NULL,
+	model CHAR(64) NOT NULL,
+	age _YEAR_1970 NOT NULL,
+	seats _SEATS NOT NULL
+);
+
+CREATE TABLE Technician
+(
+	id INTEGER NOT NULL,
+	full_name CHAR(128) NOT NULL
+);
+
+---------------
+---RELATIONS---
+---------------
+
+CREATE TABLE Reservation
+(
+	rnum INTEGER NOT NULL,
+	cid INTEGER NOT NULL,
+	fid INTEGER NOT NULL,
+	status _STATUS,
+	booked_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP--waitlist order
+);
+
+-- Adds Serial to automatically increment Id
+CREATE TABLE FlightInfo
+(
+	fiid INTEGER NOT NULL,
+	flight_id INTEGER NOT NULL,
+	pilot_id INTEGER NOT NULL,
+	plane_id INTEGER NOT NULL
+);
+
+CREATE TABLE Repairs
+(
+	rid INTEGER NOT NULL,
+	repair_date DATE NOT NULL,
+	repair_code _CODE,
+	pilot_id INTEGER NOT NULL,
+	plane_id INTEGER NOT NULL,
+	technician_id INTEGER NOT NULL
+);
+
+-- Adds Serial to automatically increment Id
+CREATE TABLE Schedule
+(
+	id INTEGER NOT NULL,
+	flightNum INTEGER NOT NULL,
+	departure_time TIMESTAMP NOT NULL,
+	arrival_time TIMESTAMP NOT NULL
+);
+
+---------------
+---SUMMARIES---
+---------------
+-- Repair counts kept by the triggers in constraints.sql, so the repair
+-- reports read one row per plane or year instead of grouping all Repairs
+CREATE TABLE RepairsPerPlane
+(
+	plane_id INTEGER NOT NULL,
+	num_repairs _PZEROINTEGER NOT NULL
+);
+
+CREATE TABLE RepairsPerYear
+(
+	year INTEGER NOT NULL,
+	num_repairs _PZEROINTEGER NOT NULL
+);
+
+---------------
+---SEQUENCES---
+---------------
+-- Hi values for the client side IdAllocator. Each nextval reserves the ids
+-- hi * 100 to hi * 100 + 99 (IdAllocator.BLOCK_SIZE) for one client.
+CREATE SEQUENCE reservation_rnum_hi;
+CREATE SEQUENCE flightinfo_fiid_hi;
+CREATE SEQUENCE schedule_id_hi;